@@ -1,5 +1,10 @@
 package me.michael4797.network;
 
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import me.michael4797.network.protocol.VirtualThreads;
+
 /**
  * A convenience class used to periodically send data to a 
  * connected client. If a response is not heard in time, the
@@ -10,7 +15,12 @@ package me.michael4797.network;
  * whereas a message should only be triggered by some awaited
  * response, signaled by a call to {@link Session#onMessage()}.
  * This is to allow for a connection to timeout if a specific
- * Packet is not received in time, if so desired.
+ * Packet is not received in time, if so desired.<br/>
+ * If the {@link PacketReceiver} of the monitored Session uses
+ * {@link PacketReceiver#setVirtualHeartBeats(boolean) virtual HeartBeats},
+ * this HeartBeat is run on a virtual thread instead of being started as
+ * a platform thread. In that case this Thread is never started itself,
+ * and {@link #getThread()} returns the virtual thread that runs it.
  */
 public abstract class HeartBeat extends Thread{
 	
@@ -20,8 +30,11 @@ public abstract class HeartBeat extends Thread{
 	
 	protected final Session session;
 	
+	private final ReentrantLock lock = new ReentrantLock();
+	private final Condition resumed = lock.newCondition();
+	private volatile Thread runner;
 	private boolean suspended;
-	private boolean running;
+	private volatile boolean running;
 	private long sentTime;
 	private long receivedTime;
 	
@@ -97,11 +110,31 @@ public abstract class HeartBeat extends Thread{
 	
 	/**
 	 * Starts pulsing this HeartBeat and waiting for responses.
+	 * @throws IllegalThreadStateException If this HeartBeat was already started.
 	 */
-	public void start(){
+	public synchronized void start(){
+		
+		if(runner != null)
+			throw new IllegalThreadStateException("HeartBeat already started");
 		
 		running = true;
-		super.start();
+		if(session.handle.getReceiver().hasVirtualHeartBeats() && VirtualThreads.isSupported())
+			runner = VirtualThreads.start(this::run, "HeartBeat-" + session);
+		else {
+			
+			runner = this;
+			super.start();
+		}
+	}
+	
+	/**
+	 * Gets the thread that runs this HeartBeat. This is this Thread, unless the HeartBeat runs on
+	 * a virtual thread, and should be used to check whether the HeartBeat is alive, or to join it.
+	 * @return The thread running this HeartBeat, or null if it has not been started.
+	 */
+	public Thread getThread(){
+		
+		return runner;
 	}
 	
 	/**
@@ -111,13 +144,30 @@ public abstract class HeartBeat extends Thread{
 		
 		running = false;
 		
-		synchronized(this){
-			notifyAll();
+		lock.lock();
+		try {
+			resumed.signalAll();
+		} finally {
+			lock.unlock();
 		}
 		
 		interrupt();
 	}
 	
+	/**
+	 * Interrupts the thread running this HeartBeat, which may be a virtual thread
+	 * rather than this Thread.
+	 */
+	@Override
+	public void interrupt() {
+		
+		Thread runner = this.runner;
+		if(runner != null && runner != this)
+			runner.interrupt();
+		else
+			super.interrupt();
+	}
+	
 	/**
 	 * Called by {@link Session#onPoke()} to signal that a response
 	 * has been received from the Session monitored by this HeartBeat.
@@ -154,35 +204,45 @@ public abstract class HeartBeat extends Thread{
 	 * connections. 
 	 * @param suspended The suspended state of this HeartBeat.
 	 */
-	public synchronized void setSuspended(boolean suspended){
+	public void setSuspended(boolean suspended){
 		
-		if(!suspended && this.suspended){
-			
-			sentTime = System.currentTimeMillis();
-			receivedTime = System.currentTimeMillis();
-
-			this.suspended = suspended;				
-			notifyAll();
+		lock.lock();
+		try {
+			if(!suspended && this.suspended){
+				
+				sentTime = System.currentTimeMillis();
+				receivedTime = System.currentTimeMillis();
+	
+				this.suspended = suspended;				
+				resumed.signalAll();
+			}
+			else
+				this.suspended = suspended;
+		} finally {
+			lock.unlock();
 		}
-		else
-			this.suspended = suspended;
 	}
 	
 	
-	private synchronized boolean waitWhileSuspended(){
+	private boolean waitWhileSuspended(){
 		
 		boolean waited = false;
 
-		while(suspended){
-				
-			waited = true;			
-			try {
-				wait();
-			} catch (InterruptedException e) {
+		lock.lock();
+		try {
+			while(suspended){
 					
-				if(!running)
-					break;
+				waited = true;			
+				try {
+					resumed.await();
+				} catch (InterruptedException e) {
+						
+					if(!running)
+						break;
+				}
 			}
+		} finally {
+			lock.unlock();
 		}
 		
 		return waited;
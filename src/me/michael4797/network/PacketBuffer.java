@@ -1,32 +1,25 @@
 package me.michael4797.network;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import me.michael4797.network.protocol.PooledBuffer;
 
 /**
  * Used by unreliable {@link TransportProtocol TransportProtocols} to save previously sent Packets
- * in the case that they need to be resent to enforce reliability.
+ * in the case that they need to be resent to enforce reliability. Packets are stored in a fixed
+ * ring of slots indexed by their Packet number, so storing, finding and iterating Packets never
+ * allocates, regardless of the capacity of the PacketBuffer.
  */
 public class PacketBuffer implements Iterable<PacketData>{
 
 	public final int maxSize;
 	
-	private Node head;
-	private Node tail;
+	private final PacketData[] slots;
+	private int first;
+	private int last;
 	private int size;
-	
-	private class Node{
-		
-		private PacketData data;
-		private Node prev;
-		
-		private Node(PacketData data){
-			
-			this.data = data;
-			if(head != null)
-				head.prev = this;
-			head = this;
-		}
-	}
+	private int bytes;
 	
 	/**
 	 * Creates a PacketBuffer with the specified capacity.
@@ -37,7 +30,13 @@ public class PacketBuffer implements Iterable<PacketData>{
 	 */
 	public PacketBuffer(int size){
 		
+		if(size < 1)
+			throw new IllegalArgumentException("PacketBuffer capacity must be positive");
+		
 		maxSize = size;
+		slots = new PacketData[size];
+		for(int i = 0; i < size; ++i)
+			slots[i] = new PacketData();
 	}
 	
 	/**
@@ -47,60 +46,229 @@ public class PacketBuffer implements Iterable<PacketData>{
 	 */
 	public void addPacket(int number, byte[] data){
 		
-		Node node = new Node(new PacketData(number, data));
-		
-		if(tail == null)
-			tail = node;
+		addPacket(number, PooledBuffer.wrap(data));
+	}
+	
+	/**
+	 * Stores the specified Packet data as the most recently sent Packet. This PacketBuffer
+	 * takes ownership of the caller's reference to the buffer, and releases it once the
+	 * Packet is discarded. Packet numbers are expected to increase by one with each call,
+	 * any Packets more than {@link #maxSize} numbers older than the specified Packet are discarded.
+	 * @param number The Packet number of the specified packet data.
+	 * @param data The Packet's data.
+	 */
+	public void addPacket(int number, PooledBuffer data){
 		
-		if(size == maxSize) {
+		if(size > 0) {
+			
+			if(number - last <= 0)
+				throw new IllegalArgumentException("Packet " + number + " is not newer than the last stored Packet " + last);
 			
-			Node newTail = tail.prev;
-			tail.prev = null;
-			tail = newTail;			
+			int oldest = number - maxSize + 1;
+			if(last - oldest < 0)
+				clear();
+			else {
+				
+				for(; first - oldest < 0; ++first) {
+					
+					release(slots[index(first)]);
+				}
+			}
 		}
-		else {
+		
+		if(size == 0)
+			first = number;
+		
+		slots[index(number)].set(number, data);
+		last = number;
+		bytes += data.getLength();
+		++size;
+	}
+	
+	/**
+	 * Discards every stored Packet whose number is at most the specified number, releasing
+	 * their data. This is called once the remote client acknowledges receiving those Packets,
+	 * so they will never need to be resent.
+	 * @param number The number of the most recent Packet to discard.
+	 */
+	public void acknowledge(int number){
+		
+		if(size == 0)
+			return;
+		
+		if(last - number <= 0) {
 			
-			++size;
+			clear();
+			first = number + 1;
+			return;
 		}
+		
+		for(; number - first >= 0; ++first)
+			release(slots[index(first)]);
+	}
+	
+	/**
+	 * Gets the stored data of the Packet with the specified number.
+	 * @param number The number of the Packet.
+	 * @return The data of the Packet, or null if it is not stored in this PacketBuffer.
+	 */
+	public PacketData getPacket(int number){
+		
+		if(size == 0 || number - first < 0 || last - number < 0)
+			return null;
+		
+		PacketData data = slots[index(number)];
+		if(!data.isStored() || data.getPacketNumber() != number)
+			return null;
+		
+		return data;
+	}
+	
+	/**
+	 * Gets the stored data of the Packet with the specified number, so that it may be sent
+	 * again, and notes that it has been resent.
+	 * @param number The number of the Packet.
+	 * @param time The time at which the Packet is resent, as given by {@link System#nanoTime()}.
+	 * @return The data of the Packet, or null if it is not stored in this PacketBuffer.
+	 */
+	public PacketData resend(int number, long time){
+		
+		PacketData data = getPacket(number);
+		if(data != null)
+			data.resent(time);
+		
+		return data;
+	}
+	
+	/**
+	 * Gets the number of the oldest Packet that may still be stored in this PacketBuffer.
+	 * @return The number of the oldest Packet, this is meaningless if the PacketBuffer is empty.
+	 */
+	public int getFirst(){
+		
+		return first;
+	}
+	
+	/**
+	 * Gets the number of the most recently stored Packet.
+	 * @return The number of the newest Packet, this is meaningless if the PacketBuffer is empty.
+	 */
+	public int getLast(){
+		
+		return last;
+	}
+	
+	/**
+	 * Gets the number of Packets currently stored in this PacketBuffer.
+	 * @return The number of stored Packets.
+	 */
+	public int size(){
+		
+		return size;
+	}
+	
+	/**
+	 * Gets the total length of the Packets currently stored in this PacketBuffer.
+	 * @return The number of stored bytes.
+	 */
+	public int getBytes(){
+		
+		return bytes;
+	}
+	
+	/**
+	 * Checks whether this PacketBuffer stores any Packets.
+	 * @return True if no Packets are stored.
+	 */
+	public boolean isEmpty(){
+		
+		return size == 0;
 	}
 	
 	/**
-	 * Removes all Packets from the PacketBuffer.
+	 * Removes all Packets from the PacketBuffer, releasing their data.
 	 */
 	public void clear(){
 		
-		Node temp = tail;
-		while(temp != null) {
+		for(PacketData data: slots)
+			release(data);
+	}
+	
+	
+	private void release(PacketData data){
+		
+		int length = data.isStored() ? data.getLength() : 0;
+		if(data.release()) {
 			
-			Node next = tail.prev;
-			tail.prev = null;
-			temp = next;
+			bytes -= length;
+			--size;
 		}
+	}
+	
+	
+	private int index(int number){
 		
-		head = null;
-		tail = null;
+		return Math.floorMod(number, maxSize);
 	}
 
-
+	/**
+	 * Iterates over the stored Packets from the oldest to the most recently sent. The
+	 * returned PacketData are owned by this PacketBuffer and are only valid until
+	 * the PacketBuffer is next modified.
+	 */
 	@Override
 	public Iterator<PacketData> iterator() {
 
+		return iterator(first);
+	}
+	
+	/**
+	 * Iterates over the stored Packets whose numbers are at least the specified number, from
+	 * the oldest to the most recently sent. The returned PacketData are owned by this PacketBuffer
+	 * and are only valid until the PacketBuffer is next modified.
+	 * @param from The number of the first Packet to iterate over.
+	 * @return An Iterator over the stored Packets.
+	 */
+	public Iterator<PacketData> iterator(int from) {
+
 		return new Iterator<PacketData>(){
 
-			Node node = tail;
+			int number = size == 0 || from - first < 0 ? first : from;
+			PacketData next = advance();
+			
+			private PacketData advance() {
+				
+				if(size == 0)
+					return null;
+				
+				for(; last - number >= 0; ++number) {
+					
+					PacketData data = getPacket(number);
+					if(data != null) {
+						
+						++number;
+						return data;
+					}
+				}
+				
+				return null;
+			}
 			
 			@Override
 			public boolean hasNext() {
 				
-				return node != null;
+				return next != null;
 			}
 
 			@Override
 			public PacketData next() {
 
-				PacketData next = node.data;
-				node = node.prev;
-				return next;
+				if(next == null)
+					throw new NoSuchElementException();
+				
+				PacketData data = next;
+				next = advance();
+				return data;
 			}
 
 			@Override
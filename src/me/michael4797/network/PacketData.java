@@ -1,17 +1,47 @@
 package me.michael4797.network;
 
+import me.michael4797.network.protocol.PooledBuffer;
+
 /**
- * A utility class used by {@link PacketBuffer} to store previously sent Packets.
+ * A utility class used by {@link PacketBuffer} to store previously sent Packets. Each PacketData
+ * is a slot of its PacketBuffer, and is reused for every Packet stored in that slot.
  */
 public class PacketData {
 
-	private final int number;
-	private final byte[] data;
+	private int number;
+	private PooledBuffer data;
+	private long sendTime;
+	private int transmissions;
+	
+	PacketData(){}
+	
+	
+	PacketData(int number, PooledBuffer data){
+		
+		set(number, data);
+	}
 	
-	PacketData(int number, byte[] data){
+	
+	void set(int number, PooledBuffer data){
 		
+		release();
 		this.number = number;
 		this.data = data;
+		sendTime = System.nanoTime();
+		transmissions = 1;
+	}
+	
+	
+	void resent(long time){
+		
+		sendTime = time;
+		++transmissions;
+	}
+	
+	
+	boolean isStored(){
+		
+		return data != null;
 	}
 	
 	
@@ -21,8 +51,44 @@ public class PacketData {
 	}
 	
 	
+	/**
+	 * Gets the time at which the Packet was last sent, as given by {@link System#nanoTime()}.
+	 * @return The time the Packet was last sent.
+	 */
+	public long getSendTime(){
+		
+		return sendTime;
+	}
+	
+	/**
+	 * Gets the number of times the Packet has been sent.
+	 * @return The number of transmissions of the Packet.
+	 */
+	public int getTransmissions(){
+		
+		return transmissions;
+	}
+	
+	
 	public byte[] getPacketData(){
 		
-		return data;
+		return data.getData();
+	}
+	
+	
+	public int getLength(){
+		
+		return data.getLength();
+	}
+	
+	
+	boolean release(){
+		
+		if(data == null)
+			return false;
+		
+		data.release();
+		data = null;
+		return true;
 	}
 }
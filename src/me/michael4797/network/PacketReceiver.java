@@ -2,16 +2,30 @@ package me.michael4797.network;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.nio.file.Path;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.function.BiConsumer;
+import java.util.function.IntFunction;
 import java.util.function.Predicate;
 
 import me.michael4797.annotation.ProcessedListener;
 import me.michael4797.network.packet.Packet;
+import me.michael4797.network.protocol.BufferPool;
+import me.michael4797.network.protocol.CongestionControl;
+import me.michael4797.network.protocol.DeliveryMode;
+import me.michael4797.network.protocol.EncodedPacket;
+import me.michael4797.network.protocol.NewRenoCongestionControl;
+import me.michael4797.network.protocol.OverflowPolicy;
 import me.michael4797.network.protocol.ReceiverHandle;
 import me.michael4797.network.protocol.SessionHandle;
 import me.michael4797.network.protocol.TransportProtocol;
@@ -29,14 +43,26 @@ public abstract class PacketReceiver<T extends Session> extends Thread{
 
 	protected boolean started = false;
 	protected int maxPacketSize = 8192;
+	protected int maxMessageSize = 1 << 20;
 	protected int packetBufferSize = 64;
+	protected int receiveBatchSize = 64;
+	protected boolean virtualHeartBeats = false;
+	protected int lowWatermark = 32768;
+	protected int highWatermark = 65536;
+	protected OverflowPolicy overflowPolicy = OverflowPolicy.BLOCK;
+	protected IntFunction<? extends CongestionControl> congestionControl = NewRenoCongestionControl::new;
+	protected DeliveryMode[] channels = new DeliveryMode[0];
+	protected long autoFlushNanos = -1;
+	protected final BufferPool bufferPool = new BufferPool();
 	
 	private final ArrayList<PacketReader<?>> packetReaders = new ArrayList<>();
 	private final HashMap<Class<? extends Packet>, Integer> packetIDs = new HashMap<>();
 	
 	private final int port;
+	private final Path path;
 	private final TransportProtocol protocol;
 	private ReceiverHandle handle;
+	private volatile ScheduledExecutorService flusher;
 	
 	private final HashMap<String, ArrayDeque<BiConsumer<Session, Packet>>> packetHandlers = new HashMap<>();
 	private final HashMap<InetSocketAddress, T> sessions = new HashMap<>();
@@ -58,9 +84,45 @@ public abstract class PacketReceiver<T extends Session> extends Thread{
 	 */
 	public PacketReceiver(int port, TransportProtocol protocol){
 				
+		this(port, null, protocol);
+	}
+	
+	/**
+	 * Creates a PacketReceiver that is bound to the specified filesystem path and uses a Unix domain socket protocol.
+	 * @param path The path to bind this PacketReceiver to.
+	 */
+	public PacketReceiver(Path path){
+		
+		this(path, TransportProtocol.UNIX_DOMAIN);
+	}
+	
+	/**
+	 * Creates a PacketReceiver that is bound to the specified filesystem path and uses the specified protocol.
+	 * The protocol must support binding to a path, such as {@link TransportProtocol#UNIX_DOMAIN}.
+	 * @param path The path to bind this PacketReceiver to.
+	 * @param protocol The protocol used for sending and receiving data.
+	 */
+	public PacketReceiver(Path path, TransportProtocol protocol){
+		
+		this(0, path, protocol);
+	}
+	
+	
+	private PacketReceiver(int port, Path path, TransportProtocol protocol){
+		
 		lock = new ReentrantReadWriteLock();
 		this.protocol = protocol;
 		this.port = port;
+		this.path = path;
+	}
+	
+	/**
+	 * The filesystem path this PacketReceiver binds to, for protocols that bind to a path rather than a port.
+	 * @return The path passed to the constructor, or null if this PacketReceiver was created with a port.
+	 */
+	public Path getPath() {
+		
+		return path;
 	}
 	
 	/**
@@ -91,6 +153,35 @@ public abstract class PacketReceiver<T extends Session> extends Thread{
 		return maxPacketSize;
 	}
 	
+	/**
+	 * For protocols that split Packets larger than the maximum packet size into several datagrams, this sets the
+	 * largest Packet that may be sent. It also limits how many bytes of partially received, unreliably sent Packets
+	 * each {@link Session} holds while waiting for their remaining fragments. Partially received, reliably sent
+	 * Packets may hold one whole message plus the datagrams of the {@link #setPacketBufferSize(int) packet buffer},
+	 * and a remote client that exceeds this is disconnected. This value cannot be changed after the PacketReceiver
+	 * is started.
+	 * @param size The maximum size of a Packet sent in fragments.
+	 */
+	public void setMaxMessageSize(int size) {
+
+		synchronized(protocol) {
+			if(started)
+				throw new RuntimeException("Max message size can not be changed after starting the PacketReceiver");
+					
+			maxMessageSize = size;
+		}
+	}
+	
+	/**
+	 * For protocols that split Packets larger than the maximum packet size into several datagrams,
+	 * the largest Packet that may be sent.
+	 * @return The maximum message size, set by {@link #setMaxMessageSize(int)}.
+	 */
+	public int getMaxMessageSize() {
+		
+		return maxMessageSize;
+	}
+	
 	/**
 	 * For protocols that use a {@link PacketBuffer}, this sets the maximum amount of
 	 * Packets stored in the PacketBuffer.
@@ -116,6 +207,256 @@ public abstract class PacketReceiver<T extends Session> extends Thread{
 		return packetBufferSize;
 	}
 	
+	/**
+	 * For protocols that drain incoming datagrams in batches, this sets the maximum number of
+	 * datagrams read from the socket before they are parsed and dispatched. Each slot in the batch
+	 * holds a buffer of {@link #getMaxPacketSize()} bytes.
+	 * @param size The maximum number of datagrams read per batch.
+	 */
+	public void setReceiveBatchSize(int size) {
+
+		synchronized(protocol) {
+			if(started)
+				throw new RuntimeException("Receive batch size can not be changed after starting the PacketReceiver");
+			
+			if(size < 1)
+				throw new IllegalArgumentException("Receive batch size must be positive");
+			
+			receiveBatchSize = size;
+		}
+	}
+	
+	/**
+	 * For protocols that drain incoming datagrams in batches, this is the maximum number of
+	 * datagrams read from the socket before they are parsed and dispatched.
+	 * @return The maximum number of datagrams read per batch.
+	 */
+	public int getReceiveBatchSize() {
+		
+		return receiveBatchSize;
+	}
+	
+	/**
+	 * Sets whether the {@link HeartBeat HeartBeats} of this PacketReceiver's {@link Session Sessions}
+	 * run on virtual threads rather than platform threads. If the running JVM does not support virtual
+	 * threads, this value is ignored. This value cannot be changed after the PacketReceiver is started.
+	 * @param virtual True if HeartBeats should run on virtual threads.
+	 */
+	public void setVirtualHeartBeats(boolean virtual) {
+
+		synchronized(protocol) {
+			if(started)
+				throw new RuntimeException("HeartBeat threads can not be changed after starting the PacketReceiver");
+			
+			virtualHeartBeats = virtual;
+		}
+	}
+	
+	/**
+	 * Whether the {@link HeartBeat HeartBeats} of this PacketReceiver's {@link Session Sessions}
+	 * run on virtual threads.
+	 * @return True if HeartBeats should run on virtual threads.
+	 */
+	public boolean hasVirtualHeartBeats() {
+		
+		return virtualHeartBeats;
+	}
+	
+	/**
+	 * For protocols that queue outgoing data, this sets the number of queued bytes per {@link Session}
+	 * above which the Session becomes unwritable, and the number of bytes to which the queue must drain
+	 * before the Session is writable again. These values cannot be changed after the PacketReceiver is started.<br/>
+	 * The blocking stream protocols, {@link TransportProtocol#TCP_ASYNC TCP_ASYNC}, {@link TransportProtocol#TCP_SYNC TCP_SYNC}, {@link TransportProtocol#TCP_VIRTUAL TCP_VIRTUAL}
+	 * and {@link TransportProtocol#UNIX_DOMAIN UNIX_DOMAIN}, drain each Session's queue on a sender thread of its own, started
+	 * the first time the Session launches data, so that a slow client never holds up writes to any other. The sender is a virtual
+	 * thread where supported. On JVMs without virtual threads it is a platform thread, so each client then occupies two platform
+	 * threads, one reading and one writing. {@link TransportProtocol#TCP_NIO TCP_NIO} writes from its shared event loops instead,
+	 * and {@link TransportProtocol#SHARED_MEMORY SHARED_MEMORY} only queues data its shared memory ring has no room for, which its
+	 * polling thread writes once the remote client has read enough.
+	 * @see Session#isWritable()
+	 * @param low The low watermark, in bytes.
+	 * @param high The high watermark, in bytes.
+	 */
+	public void setWatermarks(int low, int high) {
+
+		synchronized(protocol) {
+			if(started)
+				throw new RuntimeException("Watermarks can not be changed after starting the PacketReceiver");
+			
+			if(low < 0 || high < low)
+				throw new IllegalArgumentException("Watermarks must satisfy 0 <= low <= high");
+			
+			lowWatermark = low;
+			highWatermark = high;
+		}
+	}
+	
+	/**
+	 * For protocols that queue outgoing data, this is the number of bytes to which an unwritable
+	 * {@link Session Session's} queue must drain before it is writable again.
+	 * @return The low watermark, in bytes.
+	 */
+	public int getLowWatermark() {
+		
+		return lowWatermark;
+	}
+	
+	/**
+	 * For protocols that queue outgoing data, this is the number of queued bytes above which
+	 * a {@link Session} becomes unwritable.
+	 * @return The high watermark, in bytes.
+	 */
+	public int getHighWatermark() {
+		
+		return highWatermark;
+	}
+	
+	/**
+	 * For protocols that queue outgoing data, this sets what happens when launching Packets would
+	 * exceed a {@link Session Session's} high watermark. This value cannot be changed after the
+	 * PacketReceiver is started. The queues of some protocols are drained by a sender thread per
+	 * Session, see {@link #setWatermarks(int, int)}.
+	 * @param policy The OverflowPolicy.
+	 */
+	public void setOverflowPolicy(OverflowPolicy policy) {
+
+		synchronized(protocol) {
+			if(started)
+				throw new RuntimeException("Overflow policy can not be changed after starting the PacketReceiver");
+			
+			overflowPolicy = policy;
+		}
+	}
+	
+	/**
+	 * For protocols that queue outgoing data, this is what happens when launching Packets would
+	 * exceed a {@link Session Session's} high watermark.
+	 * @return The OverflowPolicy.
+	 */
+	public OverflowPolicy getOverflowPolicy() {
+		
+		return overflowPolicy;
+	}
+	
+	/**
+	 * For protocols that enforce reliability over an unreliable transport, this sets how each {@link Session}
+	 * creates the {@link CongestionControl} that limits its reliably sent data in flight. The function is given
+	 * the largest datagram size of the Session, in bytes. This value cannot be changed after the PacketReceiver is started.
+	 * @see NewRenoCongestionControl
+	 * @see me.michael4797.network.protocol.DelayCongestionControl
+	 * @param factory Creates a new CongestionControl for a Session.
+	 */
+	public void setCongestionControl(IntFunction<? extends CongestionControl> factory) {
+
+		synchronized(protocol) {
+			if(started)
+				throw new RuntimeException("Congestion control can not be changed after starting the PacketReceiver");
+			
+			congestionControl = factory;
+		}
+	}
+	
+	/**
+	 * For protocols that enforce reliability over an unreliable transport, this creates the {@link CongestionControl}
+	 * of each {@link Session}.
+	 * @return The function creating a new CongestionControl, given the largest datagram size of a Session.
+	 */
+	public IntFunction<? extends CongestionControl> getCongestionControl() {
+		
+		return congestionControl;
+	}
+	
+	/**
+	 * Sets the channels that each {@link Session} may send Packets on with {@link Session#sendPacket(Packet, int)}, in
+	 * addition to its default stream. Channel n is delivered according to the nth DeliveryMode, and every channel has its
+	 * own sequence, so that a Packet lost on one channel does not hold back Packets on the others. Both ends of a connection
+	 * must use the same channels. At most 255 channels may be set. This value cannot be changed after the PacketReceiver is started.
+	 * @param modes The DeliveryMode of each channel.
+	 */
+	public void setChannels(DeliveryMode... modes) {
+
+		if(modes.length > 255)
+			throw new IllegalArgumentException("At most 255 channels may be set");
+		
+		synchronized(protocol) {
+			if(started)
+				throw new RuntimeException("Channels can not be changed after starting the PacketReceiver");
+			
+			channels = modes.clone();
+		}
+	}
+	
+	/**
+	 * Gets the number of channels that each {@link Session} may send Packets on, in addition to its default stream.
+	 * @return The number of channels.
+	 */
+	public int getChannelCount() {
+		
+		return channels.length;
+	}
+	
+	/**
+	 * Gets the DeliveryMode of the specified channel.
+	 * @param channel The channel.
+	 * @return The DeliveryMode of the channel.
+	 */
+	public DeliveryMode getChannelMode(int channel) {
+		
+		if(channel < 0 || channel >= channels.length)
+			throw new IllegalArgumentException("Unknown channel " + channel);
+		
+		return channels[channel];
+	}
+	
+	/**
+	 * Enables automatic flushing of sent Packets. Once a Packet is sent to a {@link Session}, its batch is launched
+	 * by a scheduler shared by all of this PacketReceiver's Sessions after the specified linger, unless it has been launched
+	 * already. If the next Packet of a similar size would not fit within {@link #getMaxPacketSize()}, the batch is launched
+	 * immediately instead. Calls to {@link Session#launchPacket()} are then only needed to send a batch before the linger expires.
+	 * A negative linger disables automatic flushing, which is the default. This value cannot be changed after the PacketReceiver is started.
+	 * @param linger The maximum time a sent Packet may wait to be launched.
+	 * @param unit The unit of the linger.
+	 */
+	public void setAutoFlush(long linger, TimeUnit unit) {
+
+		synchronized(protocol) {
+			if(started)
+				throw new RuntimeException("Auto flush can not be changed after starting the PacketReceiver");
+			
+			autoFlushNanos = linger < 0 ? -1 : unit.toNanos(linger);
+		}
+	}
+	
+	/**
+	 * The maximum time a sent Packet may wait before it is automatically launched.
+	 * @see #setAutoFlush(long, TimeUnit)
+	 * @return The linger in nanoseconds, or -1 if automatic flushing is disabled.
+	 */
+	public long getAutoFlushNanos() {
+		
+		return autoFlushNanos;
+	}
+	
+	/**
+	 * Whether sent Packets are automatically launched.
+	 * @see #setAutoFlush(long, TimeUnit)
+	 * @return True if automatic flushing is enabled.
+	 */
+	public boolean isAutoFlush() {
+		
+		return autoFlushNanos >= 0;
+	}
+	
+	/**
+	 * The {@link BufferPool} used by the underlying protocol for receiving, sending and storing
+	 * Packet data.
+	 * @return The BufferPool shared by this PacketReceiver and its {@link Session Sessions}.
+	 */
+	public BufferPool getBufferPool() {
+		
+		return bufferPool;
+	}
+	
 	/**
 	 * The handle for this PacketReceiver, constructed by the {@link TransportProtocol}.
 	 * @see ReceiverHandle
@@ -265,9 +606,31 @@ public abstract class PacketReceiver<T extends Session> extends Thread{
 		}
 		
 		setName("PacketReceiver-" + handle.getPort());
+		if(autoFlushNanos >= 0) {
+			
+			String name = "PacketReceiver-Flush-" + handle.getPort();
+			flusher = Executors.newSingleThreadScheduledExecutor((r) -> {
+				
+				Thread thread = new Thread(r, name);
+				thread.setDaemon(true);
+				return thread;
+			});
+		}
+		
 		super.start();
 	}
 	
+	/**
+	 * Schedules the specified {@link Session} to be flushed once the auto flush linger expires.
+	 * @param session The Session with unlaunched Packets.
+	 */
+	void scheduleFlush(Session session) {
+		
+		try {
+			flusher.schedule(session::flush, autoFlushNanos, TimeUnit.NANOSECONDS);
+		} catch (RejectedExecutionException e) {}
+	}
+	
 	/**
 	 * Stops this PacketReceiver and closes all its {@link Session Sessions}.
 	 */
@@ -275,6 +638,8 @@ public abstract class PacketReceiver<T extends Session> extends Thread{
 		
 		forAll((s) -> true);
 		handle.close();
+		if(flusher != null)
+			flusher.shutdownNow();
 	}
 	
 	
@@ -329,6 +694,19 @@ public abstract class PacketReceiver<T extends Session> extends Thread{
 		handlePacket(session, packet);
 	}
 	
+	/**
+	 * Called by the underlying protocol when a client's outgoing queue crosses one of its watermarks.
+	 * @see Session#isWritable()
+	 * @param handle The {@link SessionHandle} of the client.
+	 * @param writable True if the client became writable, false if it became unwritable.
+	 */
+	public void onWritabilityChanged(SessionHandle handle, boolean writable) {
+
+		T session = sessions.get(handle.getAddress());
+		if(session != null)
+			session.onWritabilityChanged(writable);
+	}
+	
 	/**
 	 * Called every time a Packet is received by a client. Propagates the even to all
 	 * relevant {@link PacketListener PacketListeners}.
@@ -403,21 +781,119 @@ public abstract class PacketReceiver<T extends Session> extends Thread{
 		lock.writeLock().unlock();
 	}
 	
+	/**
+	 * Sends the specified Packet to every {@link Session} that matches the specified Predicate. The Packet is
+	 * written only once, and the encoded bytes are appended to each Session's batch, as by {@link Session#sendPacket(Packet)}.
+	 * The batches are launched as usual, either by {@link Session#launchPacket()} or automatically.
+	 * @see #setAutoFlush(long, TimeUnit)
+	 * @param packet The Packet to send.
+	 * @param filter The Predicate selecting which Sessions receive the Packet.
+	 */
+	public void broadcast(Packet packet, Predicate<T> filter){
+		
+		broadcast(packet, select(filter), false);
+	}
+	
+	/**
+	 * Sends the specified Packet to each of the specified {@link Session Sessions}. The Packet is
+	 * written only once, and the encoded bytes are appended to each Session's batch, as by {@link Session#sendPacket(Packet)}.
+	 * @param packet The Packet to send.
+	 * @param sessions The Sessions of this PacketReceiver that receive the Packet.
+	 */
+	public void broadcast(Packet packet, Collection<? extends T> sessions){
+		
+		broadcast(packet, sessions, false);
+	}
+	
+	/**
+	 * Identical to {@link #broadcast(Packet, Predicate)}, except the Packet is sent as by
+	 * {@link Session#sendPacketReliably(Packet)}.
+	 * @param packet The Packet to send.
+	 * @param filter The Predicate selecting which Sessions receive the Packet.
+	 */
+	public void broadcastReliably(Packet packet, Predicate<T> filter){
+		
+		broadcast(packet, select(filter), true);
+	}
+	
+	/**
+	 * Identical to {@link #broadcast(Packet, Collection)}, except the Packet is sent as by
+	 * {@link Session#sendPacketReliably(Packet)}.
+	 * @param packet The Packet to send.
+	 * @param sessions The Sessions of this PacketReceiver that receive the Packet.
+	 */
+	public void broadcastReliably(Packet packet, Collection<? extends T> sessions){
+		
+		broadcast(packet, sessions, true);
+	}
+	
+	
+	private ArrayList<T> select(Predicate<T> filter){
+		
+		ArrayList<T> selected = new ArrayList<>();
+		lock.writeLock().lock();
+		try {
+			for(T session: sessions.values())
+				if(filter.test(session))
+					selected.add(session);
+		} finally {
+			lock.writeLock().unlock();
+		}
+		
+		return selected;
+	}
+	
+	
+	private void broadcast(Packet packet, Collection<? extends T> sessions, boolean reliable){
+		
+		if(sessions.isEmpty())
+			return;
+		
+		EncodedPacket encoded = new EncodedPacket(packet, this);
+		for(T session: sessions) {
+			
+			if(reliable)
+				session.sendPacketReliably(encoded);
+			else
+				session.sendPacket(encoded);
+		}
+	}
+	
 	/**
 	 * Opens a connection to specified address and creates a {@link Session} for the
 	 * new client.
 	 * @param to The address to which the new Session should be connected.
 	 * @return The newly created Session.
 	 */
-	public synchronized T openConnection(InetSocketAddress to){
+	public T openConnection(InetSocketAddress to){
+		
+		return connectSession(handle.openSession(to));
+	}
+	
+	/**
+	 * Opens a connection to the specified address without blocking the calling Thread, and
+	 * creates a {@link Session} for the new client once connected. Many connections may be
+	 * opened in parallel this way. The returned future may be completed on a Thread belonging
+	 * to the underlying protocol, so dependent actions should not block.
+	 * @see ReceiverHandle#openSessionAsync(InetSocketAddress)
+	 * @param to The address to which the new Session should be connected.
+	 * @return A future completed with the newly created Session, or completed exceptionally
+	 * if the connection could not be opened.
+	 */
+	public CompletableFuture<T> openConnectionAsync(InetSocketAddress to){
+		
+		return handle.openSessionAsync(to).thenApply(this::connectSession);
+	}
+	
+	
+	private synchronized T connectSession(SessionHandle sessionHandle){
 		
-		SessionHandle sessionHandle = handle.openSession(to);
 		T session = sessions.get(sessionHandle.getAddress());
 		
 		if(session != null)
 			return session;		
 		
-		session = createSession(handle.openSession(to));
+		session = createSession(sessionHandle);
 		session.connect();
 		lock.readLock().lock();
 		sessions.put(session.handle.getAddress(), session);
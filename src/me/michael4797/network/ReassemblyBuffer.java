@@ -0,0 +1,244 @@
+package me.michael4797.network;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import me.michael4797.util.BinaryReader;
+
+/**
+ * Used by unreliable {@link TransportProtocol TransportProtocols} to reassemble Packets that were too large
+ * for a single datagram, and were sent as several fragments. Fragments may arrive in any order, and are only
+ * copied into a whole message once every fragment has arrived, so a partial message holds no more memory than
+ * the fragments received for it. Partial messages sent unreliably may never complete, so together they are
+ * limited to a fixed number of bytes, and are discarded once they are older than the timeout, or to make room
+ * for newer messages. Partial messages sent reliably are always completed, so they are never discarded, and
+ * are instead limited to their own number of bytes, which a well behaved remote client never exceeds. Since a
+ * reliable fragment is never sent again once it is received, an invalid one is treated as a protocol error.
+ */
+public class ReassemblyBuffer {
+
+	public final int maxBytes;
+	public final int maxReliableBytes;
+	public final long timeout;
+
+	private final LinkedHashMap<Integer, Message> partial = new LinkedHashMap<>();
+	private int bytes;
+	private int reliableBytes;
+
+	/**
+	 * Creates a ReassemblyBuffer.
+	 * @param maxBytes The largest message that may be reassembled, and the most bytes that partial
+	 * unreliable messages may hold at once.
+	 * @param maxReliableBytes The most bytes that partial reliable messages may hold at once.
+	 * @param timeout The time after which a partial unreliable message is discarded, in nanoseconds.
+	 */
+	public ReassemblyBuffer(int maxBytes, int maxReliableBytes, long timeout){
+
+		if(maxBytes < 1 || maxReliableBytes < 1)
+			throw new IllegalArgumentException("ReassemblyBuffer capacity must be positive");
+
+		this.maxBytes = maxBytes;
+		this.maxReliableBytes = maxReliableBytes;
+		this.timeout = timeout;
+	}
+
+	/**
+	 * Adds a fragment of a message, read from the remainder of the specified datagram. Unreliable fragments
+	 * that are invalid, or belong to a message that has been discarded, are ignored.
+	 * @param id The number identifying the message.
+	 * @param length The length of the whole message.
+	 * @param offset The position of the fragment within the message.
+	 * @param reader The BinaryReader containing the fragment.
+	 * @param reliable Whether the message was sent reliably.
+	 * @param time The time the fragment was received.
+	 * @return The whole message if this fragment completed it, otherwise null.
+	 * @throws IOException If the fragment was sent reliably, and is invalid, or would cause partial reliable
+	 * messages to exceed their capacity.
+	 */
+	public byte[] add(int id, int length, int offset, BinaryReader reader, boolean reliable, long time) throws IOException{
+
+		expire(time);
+
+		Message message = partial.get(id);
+		if(message == null) {
+
+			if(length < 1 || length > maxBytes)
+				return reject(reader, reliable, "Fragmented message of " + length + " bytes exceeds the max message size");
+
+			if(offset < 0 || offset >= length)
+				return reject(reader, reliable, "Fragment offset " + offset + " is outside of its message");
+
+			message = new Message(length, reliable, time);
+			partial.put(id, message);
+		}
+		else if(message.reliable != reliable || length != message.length || offset < 0 || offset >= message.length || message.fragments.containsKey(offset))
+			return reject(reader, reliable || message.reliable, "Fragment " + offset + " of message " + id + " does not match its message");
+
+		byte[] fragment = read(reader, message.length - offset);
+		if(fragment == null) {
+
+			discard(id);
+			return reject(reader, message.reliable, "Fragment " + offset + " of message " + id + " extends past its message");
+		}
+
+		if(message.reliable) {
+
+			if(reliableBytes + fragment.length > maxReliableBytes)
+				throw new IOException("Partial reliable messages exceeded " + maxReliableBytes + " bytes");
+
+			reliableBytes += fragment.length;
+		}
+		else if(reserve(fragment.length, message))
+			bytes += fragment.length;
+		else {
+
+			discard(id);
+			return null;
+		}
+
+		message.fragments.put(offset, fragment);
+		message.received += fragment.length;
+		if(message.received < message.length)
+			return null;
+
+		discard(id);
+		byte[] data = message.assemble();
+		if(data == null)
+			return reject(reader, message.reliable, "Fragments of message " + id + " overlap");
+
+		return data;
+	}
+
+	/**
+	 * Gets the number of partial messages held by this ReassemblyBuffer.
+	 * @return The number of partial messages.
+	 */
+	public int size(){
+
+		return partial.size();
+	}
+
+	/**
+	 * Discards every partial message.
+	 */
+	public void clear(){
+
+		partial.clear();
+		bytes = 0;
+		reliableBytes = 0;
+	}
+
+
+	private static byte[] reject(BinaryReader reader, boolean reliable, String reason) throws IOException{
+
+		reader.setPosition(reader.getData().length);
+		if(reliable)
+			throw new IOException(reason);
+
+		return null;
+	}
+
+
+	private static byte[] read(BinaryReader reader, int remaining){
+
+		byte[] fragment = new byte[Math.min(remaining, reader.getData().length)];
+		int size = 0;
+		while(reader.hasMoreData() && size < fragment.length)
+			fragment[size++] = reader.readByte();
+
+		if(reader.hasMoreData()) {
+
+			reader.setPosition(reader.getData().length);
+			return null;
+		}
+
+		return size == fragment.length ? fragment : Arrays.copyOf(fragment, size);
+	}
+
+
+	private boolean reserve(int size, Message keep){
+
+		Iterator<Message> messages = partial.values().iterator();
+		while(bytes + size > maxBytes && messages.hasNext()) {
+
+			Message message = messages.next();
+			if(!message.reliable && message != keep) {
+
+				bytes -= message.received;
+				messages.remove();
+			}
+		}
+
+		return bytes + size <= maxBytes;
+	}
+
+
+	private void expire(long time){
+
+		Iterator<Message> messages = partial.values().iterator();
+		while(messages.hasNext()) {
+
+			Message message = messages.next();
+			if(time - message.time < timeout)
+				return;
+
+			if(!message.reliable) {
+
+				bytes -= message.received;
+				messages.remove();
+			}
+		}
+	}
+
+
+	private void discard(int id){
+
+		Message message = partial.remove(id);
+		if(message == null)
+			return;
+
+		if(message.reliable)
+			reliableBytes -= message.received;
+		else
+			bytes -= message.received;
+	}
+
+
+	private static class Message {
+
+		private final int length;
+		private final TreeMap<Integer, byte[]> fragments = new TreeMap<>();
+		private final boolean reliable;
+		private final long time;
+		private int received;
+
+
+		private Message(int length, boolean reliable, long time){
+
+			this.length = length;
+			this.reliable = reliable;
+			this.time = time;
+		}
+
+
+		private byte[] assemble(){
+
+			byte[] data = new byte[length];
+			int position = 0;
+			for(Map.Entry<Integer, byte[]> fragment: fragments.entrySet()) {
+
+				if(fragment.getKey() != position)
+					return null;
+
+				System.arraycopy(fragment.getValue(), 0, data, position, fragment.getValue().length);
+				position += fragment.getValue().length;
+			}
+
+			return position == length ? data : null;
+		}
+	}
+}
@@ -0,0 +1,176 @@
+package me.michael4797.network;
+
+import me.michael4797.network.packet.Packet;
+
+/**
+ * Used by unreliable {@link TransportProtocol TransportProtocols} to hold reliable Packets that arrived
+ * ahead of a missing datagram, so that they are not discarded and do not need to be resent. The Packets
+ * of each datagram are stored in a fixed ring of slots indexed by the datagram's number, and are taken
+ * back out once every earlier datagram has been received. A bitmap over the same ring records which
+ * datagrams are held, so duplicates are found, and held or missing datagrams are scanned for, a word
+ * at a time.
+ */
+public class ReorderBuffer {
+
+	public final int maxSize;
+
+	private final Packet[][] slots;
+	private final int[] numbers;
+	private final long[] held;
+	private int size;
+
+	/**
+	 * Creates a ReorderBuffer with the specified capacity.
+	 * @param size The capacity of the ReorderBuffer, datagrams may be held if they
+	 * arrive fewer than this many numbers ahead of the next expected datagram.
+	 */
+	public ReorderBuffer(int size){
+
+		if(size < 1)
+			throw new IllegalArgumentException("ReorderBuffer capacity must be positive");
+
+		maxSize = size;
+		slots = new Packet[size][];
+		numbers = new int[size];
+		held = new long[(size + 63) >>> 6];
+	}
+
+	/**
+	 * Holds the Packets of the specified datagram until they can be delivered in order.
+	 * @param number The number of the datagram.
+	 * @param packets The Packets read from the datagram.
+	 */
+	public void put(int number, Packet[] packets){
+
+		int index = index(number);
+		if(!isHeld(index))
+			++size;
+
+		held[index >>> 6] |= 1L << index;
+		slots[index] = packets;
+		numbers[index] = number;
+	}
+
+	/**
+	 * Checks whether the datagram with the specified number is held by this ReorderBuffer.
+	 * @param number The number of the datagram.
+	 * @return True if the datagram is held.
+	 */
+	public boolean contains(int number){
+
+		int index = index(number);
+		return isHeld(index) && numbers[index] == number;
+	}
+
+	/**
+	 * Finds the first datagram within the specified range that is held by this ReorderBuffer.
+	 * The range must not span more than {@link #maxSize} numbers.
+	 * @param from The number at which to start searching.
+	 * @param to The number at which to stop searching, inclusive.
+	 * @return The number of the first held datagram, or to + 1 if none are held.
+	 */
+	public int nextHeld(int from, int to){
+
+		return scan(from, to, true);
+	}
+
+	/**
+	 * Finds the first datagram within the specified range that is not held by this ReorderBuffer.
+	 * The range must not span more than {@link #maxSize} numbers.
+	 * @param from The number at which to start searching.
+	 * @param to The number at which to stop searching, inclusive.
+	 * @return The number of the first missing datagram, or to + 1 if all are held.
+	 */
+	public int nextMissing(int from, int to){
+
+		return scan(from, to, false);
+	}
+
+
+	private int scan(int from, int to, boolean wanted){
+
+		int number = from;
+		while(to - number >= 0) {
+
+			int index = index(number);
+			if((index & 63) == 0 && index + 64 <= maxSize && to - number >= 63) {
+
+				long word = held[index >>> 6];
+				if(word == (wanted ? 0L : -1L)) {
+
+					number += 64;
+					continue;
+				}
+			}
+
+			if(isHeld(index) == wanted)
+				return number;
+
+			++number;
+		}
+
+		return to + 1;
+	}
+
+	/**
+	 * Removes the Packets of the datagram with the specified number from this ReorderBuffer.
+	 * @param number The number of the datagram.
+	 * @return The Packets of the datagram, or null if it is not held.
+	 */
+	public Packet[] take(int number){
+
+		if(!contains(number))
+			return null;
+
+		int index = index(number);
+		Packet[] packets = slots[index];
+		slots[index] = null;
+		held[index >>> 6] &= ~(1L << index);
+		--size;
+		return packets;
+	}
+
+	/**
+	 * Gets the number of datagrams currently held by this ReorderBuffer.
+	 * @return The number of held datagrams.
+	 */
+	public int size(){
+
+		return size;
+	}
+
+	/**
+	 * Checks whether this ReorderBuffer holds any datagrams.
+	 * @return True if no datagrams are held.
+	 */
+	public boolean isEmpty(){
+
+		return size == 0;
+	}
+
+	/**
+	 * Discards every datagram held by this ReorderBuffer.
+	 */
+	public void clear(){
+
+		for(int i = 0; i < slots.length; ++i)
+			slots[i] = null;
+
+		for(int i = 0; i < held.length; ++i)
+			held[i] = 0;
+
+		size = 0;
+	}
+
+
+	private boolean isHeld(int index){
+
+		return (held[index >>> 6] & (1L << index)) != 0;
+	}
+
+
+	private int index(int number){
+
+		return Math.floorMod(number, maxSize);
+	}
+}
@@ -1,8 +1,11 @@
 package me.michael4797.network;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
 
 import me.michael4797.network.packet.Packet;
+import me.michael4797.network.protocol.EncodedPacket;
 import me.michael4797.network.protocol.SessionHandle;
 
 /**
@@ -16,7 +19,9 @@ public class Session {
 	protected final SessionProtocol protocol;
 	
 	protected boolean connected = false;
-	private final Object connectionLock = new Object();
+	private final ReentrantLock connectionLock = new ReentrantLock();
+	private final ReentrantLock sendLock = new ReentrantLock();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
 	
 	/**
 	 * Creates a new session, backed by the specified {@link SessionHandle} and using the specified
@@ -40,9 +45,11 @@ public class Session {
 	 */
 	protected void connected() {
 
-		synchronized(connectionLock) {
-		
+		connectionLock.lock();
+		try {
 			connected = true;
+		} finally {
+			connectionLock.unlock();
 		}
 	}
 	
@@ -55,13 +62,15 @@ public class Session {
 	 */
 	protected void connect(){
 		
-		synchronized(connectionLock) {
-			
+		connectionLock.lock();
+		try {
 			if(connected)
 				return;
 			
 			connected = true;			
 			onConnect();
+		} finally {
+			connectionLock.unlock();
 		}
 	}
 	
@@ -75,8 +84,8 @@ public class Session {
 	 */
 	public void disconnect(){
 			
-		synchronized(connectionLock) {
-			
+		connectionLock.lock();
+		try {
 			if(!connected)
 				return;
 			
@@ -84,6 +93,8 @@ public class Session {
 			
 			connected = false;
 			handle.getReceiver().disconnectSession(this);
+		} finally {
+			connectionLock.unlock();
 		}
 	}
 
@@ -134,6 +145,16 @@ public class Session {
 		protocol.onMessage();
 	}
 	
+	/**
+	 * Forwards a change in this Session's writability to its {@link SessionProtocol}.
+	 * @see #isWritable()
+	 * @param writable True if this Session became writable.
+	 */
+	protected void onWritabilityChanged(boolean writable) {
+		
+		protocol.onWritabilityChanged(writable);
+	}
+	
 	/**
 	 * Retrieves the connected status of this Session.
 	 * @return The connected status.
@@ -143,6 +164,18 @@ public class Session {
 		return connected;
 	}
 	
+	/**
+	 * Whether launched Packets can be queued without exceeding the high watermark of the underlying
+	 * protocol. Senders of non-essential data should hold off while this Session is unwritable,
+	 * rather than relying on the {@link me.michael4797.network.protocol.OverflowPolicy OverflowPolicy}.
+	 * @see PacketReceiver#setWatermarks(int, int)
+	 * @return True if this Session is writable.
+	 */
+	public boolean isWritable() {
+		
+		return handle.isWritable();
+	}
+	
 	/**
 	 * Sends the specified packet and forces the underlying protocol to ensure the Packet
 	 * is reliably received by the remote client. If the underlying protocol does not
@@ -151,17 +184,22 @@ public class Session {
 	 * @see {@link #sendPacket(Packet)}
 	 * @param packet The packet to send.
 	 */
-	public synchronized void sendPacketReliably(Packet packet){
+	public void sendPacketReliably(Packet packet){
 		
 		if(!connected)
 			return;
 
+		sendLock.lock();
 		try {
+			int buffered = handle.getBufferedBytes();
 			handle.forceReliability(true);
 			handle.sendPacket(packet);
+			autoFlush(buffered, handle.getBufferedBytes());
 		} catch (IOException e) {
 			System.err.println("Error sending packet data to client " + handle.getAddress());
 			e.printStackTrace();
+		} finally {
+			sendLock.unlock();
 		}
 	}
 	
@@ -170,38 +208,194 @@ public class Session {
 	 * reliability, this method will behave identically to {@link #sendPacketReliably(Packet)}.
 	 * The Packet may not be sent immediately. By default, the underlying protocols will batch
 	 * sent packets until either their packet buffers fill or {@link #launchPacket()} is called.
+	 * If automatic flushing is enabled, the batch is also launched once its linger expires.
+	 * @see PacketReceiver#setAutoFlush(long, java.util.concurrent.TimeUnit)
 	 * @see #launchPacket()
 	 * @param packet The packet to send.
 	 */
-	public synchronized void sendPacket(Packet packet){
+	public void sendPacket(Packet packet){
 		
 		if(!connected)
 			return;
 
+		sendLock.lock();
 		try {
+			int buffered = handle.getBufferedBytes();
 			handle.forceReliability(false);
 			handle.sendPacket(packet);
+			autoFlush(buffered, handle.getBufferedBytes());
 		} catch (IOException e) {
 			System.err.println("Error sending packet data to client " + handle.getAddress());
 			e.printStackTrace();
+		} finally {
+			sendLock.unlock();
 		}
 	}
 	
+	/**
+	 * Sends the specified packet on the specified channel. Each channel is delivered according to its
+	 * {@link me.michael4797.network.protocol.DeliveryMode DeliveryMode}, independently of the other channels and
+	 * of the packets sent by {@link #sendPacket(Packet)} and {@link #sendPacketReliably(Packet)}. Like them, the
+	 * Packet is batched until {@link #launchPacket()} is called, or automatic flushing launches it.
+	 * @see PacketReceiver#setChannels(me.michael4797.network.protocol.DeliveryMode...)
+	 * @param packet The packet to send.
+	 * @param channel The channel to send the packet on.
+	 */
+	public void sendPacket(Packet packet, int channel){
+		
+		if(!connected)
+			return;
+
+		sendLock.lock();
+		try {
+			int buffered = handle.getBufferedBytes(channel);
+			handle.sendPacket(packet, channel);
+			autoFlush(buffered, handle.getBufferedBytes(channel));
+		} catch (IOException e) {
+			System.err.println("Error sending packet data to client " + handle.getAddress());
+			e.printStackTrace();
+		} finally {
+			sendLock.unlock();
+		}
+	}
+	
+	/**
+	 * Identical to {@link #sendPacketReliably(Packet)}, except the Packet has already been encoded,
+	 * so it is not written again. This is used to send the same Packet to many Sessions.
+	 * @see PacketReceiver#broadcastReliably(Packet, java.util.Collection)
+	 * @param packet The encoded packet to send.
+	 */
+	public void sendPacketReliably(EncodedPacket packet){
+		
+		if(!connected)
+			return;
+
+		sendLock.lock();
+		try {
+			int buffered = handle.getBufferedBytes();
+			handle.forceReliability(true);
+			handle.sendPacket(packet);
+			autoFlush(buffered, handle.getBufferedBytes());
+		} catch (IOException e) {
+			System.err.println("Error sending packet data to client " + handle.getAddress());
+			e.printStackTrace();
+		} finally {
+			sendLock.unlock();
+		}
+	}
+	
+	/**
+	 * Identical to {@link #sendPacket(Packet)}, except the Packet has already been encoded,
+	 * so it is not written again. This is used to send the same Packet to many Sessions.
+	 * @see PacketReceiver#broadcast(Packet, java.util.Collection)
+	 * @param packet The encoded packet to send.
+	 */
+	public void sendPacket(EncodedPacket packet){
+		
+		if(!connected)
+			return;
+
+		sendLock.lock();
+		try {
+			int buffered = handle.getBufferedBytes();
+			handle.forceReliability(false);
+			handle.sendPacket(packet);
+			autoFlush(buffered, handle.getBufferedBytes());
+		} catch (IOException e) {
+			System.err.println("Error sending packet data to client " + handle.getAddress());
+			e.printStackTrace();
+		} finally {
+			sendLock.unlock();
+		}
+	}
+	
+	/**
+	 * If the {@link PacketReceiver} flushes automatically, either launches the current batch if the
+	 * next Packet of the same size would not fit, or schedules it to be launched once the linger expires.
+	 * @param before The number of bytes buffered before the last Packet was sent.
+	 * @param after The number of bytes buffered after the last Packet was sent.
+	 * @throws IOException If an error is encountered launching the batch.
+	 */
+	private void autoFlush(int before, int after) throws IOException {
+		
+		PacketReceiver<?> receiver = handle.getReceiver();
+		if(!receiver.isAutoFlush())
+			return;
+		
+		if(after == 0)
+			return;
+		
+		if(after > 0) {
+			
+			int size = after > before ? after - before : after;
+			if(after + size > receiver.getMaxPacketSize()) {
+				
+				handle.launchPacket();
+				return;
+			}
+		}
+		
+		scheduleFlush();
+	}
+	
+	/**
+	 * Launches the current batch on behalf of the {@link PacketReceiver PacketReceiver's} auto flush scheduler.
+	 * The scheduler is shared by every Session, so this never waits. If another Thread is sending, or the
+	 * send queue is not writable, the flush is scheduled again instead.
+	 */
+	void flush() {
+		
+		flushScheduled.set(false);
+		if(!connected)
+			return;
+		
+		if(!sendLock.tryLock()) {
+			
+			scheduleFlush();
+			return;
+		}
+		
+		try {
+			if(!handle.isWritable()) {
+				
+				scheduleFlush();
+				return;
+			}
+			
+			handle.launchPacket();
+		} catch (IOException e) {
+			System.err.println("Error sending packet data to client " + handle.getAddress());
+			e.printStackTrace();
+		} finally {
+			sendLock.unlock();
+		}
+	}
+	
+	
+	private void scheduleFlush() {
+		
+		if(flushScheduled.compareAndSet(false, true))
+			handle.getReceiver().scheduleFlush(this);
+	}
+	
 	/**
 	 * When packets are sent, they are typically batched instead of being sent immediately.
 	 * This function will flush the packet buffer, sending all batched Packets to the remote
 	 * client.
 	 */
-	public synchronized void launchPacket(){
+	public void launchPacket(){
 
 		if(!connected)
 			return;
 		
+		sendLock.lock();
 		try {
 			handle.launchPacket();
 		} catch (IOException e) {
 			System.err.println("Error sending packet data to client " + handle.getAddress());
 			e.printStackTrace();
+		} finally {
+			sendLock.unlock();
 		}
 	}
 	
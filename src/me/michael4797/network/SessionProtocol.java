@@ -44,6 +44,15 @@ public interface SessionProtocol {
 	 */
 	void onTimeout();
 	
+	/**
+	 * Called when the {@link Session} becomes unwritable because its outgoing queue exceeded the high
+	 * watermark, or writable again once the queue has drained to the low watermark. This may be called
+	 * from any Thread that sends or writes data for the Session. By default, this does nothing.
+	 * @see Session#isWritable()
+	 * @param writable True if the Session became writable.
+	 */
+	default void onWritabilityChanged(boolean writable) {}
+	
 	/**
 	 * Gets a byte representation of this protocol's version. This is used to ensure a newly connected client
 	 * supports the same protocol.
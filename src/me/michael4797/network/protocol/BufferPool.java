@@ -0,0 +1,85 @@
+package me.michael4797.network.protocol;
+
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A pool of reusable byte arrays used for receiving, sending and storing Packet data.
+ * Arrays are grouped into power of two size classes, between {@value #MIN_SIZE} and
+ * {@value #MAX_SIZE} bytes. Each size class retains a bounded number of free arrays;
+ * buffers released while their size class is full are left to the garbage collector.
+ * Requests larger than {@value #MAX_SIZE} bytes are never pooled.
+ * @see PooledBuffer
+ */
+public class BufferPool {
+
+	public static final int MIN_SIZE = 64;
+	public static final int MAX_SIZE = 65536;
+
+	private static final int MIN_SHIFT = Integer.numberOfTrailingZeros(MIN_SIZE);
+	private static final int CLASSES = Integer.numberOfTrailingZeros(MAX_SIZE) - MIN_SHIFT + 1;
+
+	private final ArrayBlockingQueue<PooledBuffer>[] free;
+
+	/**
+	 * Creates a BufferPool that retains up to 1024 free buffers per size class.
+	 */
+	public BufferPool() {
+
+		this(1024);
+	}
+
+	/**
+	 * Creates a BufferPool that retains up to the specified number of free buffers per size class.
+	 * @param buffersPerClass The maximum number of free buffers kept for each size class.
+	 */
+	@SuppressWarnings("unchecked")
+	public BufferPool(int buffersPerClass) {
+
+		if(buffersPerClass < 1)
+			throw new IllegalArgumentException("buffersPerClass must be positive");
+
+		free = (ArrayBlockingQueue<PooledBuffer>[]) new ArrayBlockingQueue<?>[CLASSES];
+		for(int i = 0; i < CLASSES; ++i)
+			free[i] = new ArrayBlockingQueue<>(buffersPerClass);
+	}
+
+	/**
+	 * Takes a buffer of at least the specified size from this BufferPool, allocating a new one if
+	 * no free buffer of the right size class exists. The returned buffer holds a single reference
+	 * and its length is set to the requested size.
+	 * @param size The minimum capacity of the buffer.
+	 * @return A buffer with a capacity of at least the specified size.
+	 */
+	public PooledBuffer acquire(int size) {
+
+		int sizeClass = sizeClass(size);
+		if(sizeClass < 0)
+			return new PooledBuffer(null, new byte[size]).acquired(size);
+
+		PooledBuffer buffer = free[sizeClass].poll();
+		if(buffer == null)
+			buffer = new PooledBuffer(this, new byte[MIN_SIZE << sizeClass]);
+
+		return buffer.acquired(size);
+	}
+
+
+	void recycle(PooledBuffer buffer) {
+
+		int sizeClass = sizeClass(buffer.getData().length);
+		if(sizeClass >= 0)
+			free[sizeClass].offer(buffer);
+	}
+
+
+	private static int sizeClass(int size) {
+
+		if(size > MAX_SIZE)
+			return -1;
+
+		if(size <= MIN_SIZE)
+			return 0;
+
+		return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+	}
+}
@@ -0,0 +1,31 @@
+package me.michael4797.network.protocol;
+
+/**
+ * Limits how much reliably sent data a {@link SessionHandle} may have in flight, so that a connection
+ * backs off when the network path is congested instead of causing its own loss. Each connection has its
+ * own CongestionControl, which is only ever called while the connection holds its lock.
+ * @see me.michael4797.network.PacketReceiver#setCongestionControl(java.util.function.IntFunction)
+ */
+public interface CongestionControl {
+
+	/**
+	 * Gets the congestion window, the number of unacknowledged bytes the connection may have in flight.
+	 * @return The congestion window, in bytes.
+	 */
+	int getWindow();
+
+	/**
+	 * Called when the remote client acknowledges reliably sent data.
+	 * @param bytes The number of newly acknowledged bytes.
+	 * @param rtt The round trip time measured by this acknowledgement, or -1 if none could be measured.
+	 * @param estimator The round trip time estimate of the connection, which already includes the measurement.
+	 */
+	void onAcknowledged(int bytes, long rtt, RttEstimator estimator);
+
+	/**
+	 * Called when reliably sent data is lost. This is called at most once per window of data, when the
+	 * remote client reports that data is missing, and every time the retransmission timeout expires.
+	 * @param timeout Whether the loss was detected by the retransmission timeout expiring.
+	 */
+	void onLoss(boolean timeout);
+}
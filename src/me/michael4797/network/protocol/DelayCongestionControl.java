@@ -0,0 +1,90 @@
+package me.michael4797.network.protocol;
+
+/**
+ * A delay based {@link CongestionControl}, in the style of TCP Vegas. The smallest round trip time seen is taken
+ * as the delay of the empty path, and the amount by which the current round trip time exceeds it is used to estimate
+ * how many datagrams are queued in the network. Once a few datagrams are queued, the window stops growing, so the
+ * connection backs off as soon as queues start to build, well before they overflow and drop data.
+ */
+public class DelayCongestionControl implements CongestionControl{
+
+	/**
+	 * Below this many queued datagrams, the window grows by one datagram per round trip.
+	 */
+	public static final int ALPHA = 2;
+
+	/**
+	 * Above this many queued datagrams, the window shrinks by one datagram per round trip.
+	 */
+	public static final int BETA = 4;
+
+	/**
+	 * Above this many queued datagrams, slow start ends.
+	 */
+	public static final int GAMMA = 1;
+
+	protected final int datagramSize;
+	protected int window;
+	protected int threshold = Integer.MAX_VALUE;
+	protected int increase;
+	protected long baseRtt = Long.MAX_VALUE;
+
+	/**
+	 * Creates a DelayCongestionControl with an initial window of up to ten datagrams.
+	 * @param datagramSize The largest datagram size of the connection, in bytes.
+	 */
+	public DelayCongestionControl(int datagramSize) {
+
+		this.datagramSize = datagramSize;
+		window = Math.min(10 * datagramSize, Math.max(2 * datagramSize, 14600));
+	}
+
+
+	@Override
+	public int getWindow() {
+
+		return window;
+	}
+
+
+	@Override
+	public void onAcknowledged(int bytes, long rtt, RttEstimator estimator) {
+
+		if(rtt > 0)
+			baseRtt = Math.min(baseRtt, rtt);
+
+		long current = rtt > 0 ? rtt : estimator.getSmoothedRtt();
+		long queued = current > 0 && baseRtt != Long.MAX_VALUE ? window * (current - baseRtt) / current / datagramSize : 0;
+
+		if(window < threshold) {
+
+			if(queued > GAMMA)
+				threshold = window;
+			else
+				window = (int) Math.min(Integer.MAX_VALUE / 2, (long) window + bytes);
+
+			return;
+		}
+
+		increase += bytes;
+		if(increase < window)
+			return;
+
+		increase -= window;
+		if(queued < ALPHA)
+			window = (int) Math.min(Integer.MAX_VALUE / 2, (long) window + datagramSize);
+		else if(queued > BETA)
+			window = Math.max(2 * datagramSize, window - datagramSize);
+	}
+
+
+	@Override
+	public void onLoss(boolean timeout) {
+
+		threshold = Math.max(window * 3 / 4, 2 * datagramSize);
+		window = timeout ? datagramSize : threshold;
+		increase = 0;
+		if(timeout)
+			baseRtt = Long.MAX_VALUE;
+	}
+}
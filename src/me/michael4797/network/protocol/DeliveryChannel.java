@@ -0,0 +1,105 @@
+package me.michael4797.network.protocol;
+
+import me.michael4797.network.ReorderBuffer;
+import me.michael4797.network.packet.Packet;
+import me.michael4797.util.BinaryWriter;
+
+/**
+ * The state of a single channel of a {@link UDPSessionHandle}. Each channel batches its own Packets,
+ * and numbers its datagrams in its own sequence when its {@link DeliveryMode} is sequenced. Reliable
+ * datagrams of an ordered channel that arrive ahead of a missing one are held by the channel, so only
+ * the channel that lost a datagram waits for it to be resent.
+ */
+public class DeliveryChannel {
+
+	public final int id;
+	public final DeliveryMode mode;
+	public final BinaryWriter writer;
+
+	protected final int bufferSize;
+	protected ReorderBuffer held;
+	protected int lastSent = -1;
+	protected int lastReceived = -1;
+
+	/**
+	 * Creates a DeliveryChannel.
+	 * @param id The number identifying the channel in the header of its datagrams.
+	 * @param mode The DeliveryMode of the channel.
+	 * @param writer The BinaryWriter that batches the channel's Packets.
+	 * @param bufferSize The number of datagrams that may be held while waiting for a missing datagram.
+	 */
+	public DeliveryChannel(int id, DeliveryMode mode, BinaryWriter writer, int bufferSize) {
+
+		this.id = id;
+		this.mode = mode;
+		this.writer = writer;
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * Gets the number of the next datagram sent on this channel.
+	 * @return The next sequence number.
+	 */
+	public int nextSequence() {
+
+		return ++lastSent;
+	}
+
+	/**
+	 * Checks a received datagram against the sequence of this channel. The next datagram in sequence
+	 * is accepted. Unreliable datagrams are accepted whenever they are newer than every datagram received
+	 * before them, since any older datagrams are discarded.
+	 * @param number The sequence number of the datagram.
+	 * @return True if the datagram may be delivered now.
+	 */
+	public boolean accept(int number) {
+
+		if(mode.isReliable() ? number - lastReceived != 1 : number - lastReceived <= 0)
+			return false;
+
+		lastReceived = number;
+		return true;
+	}
+
+	/**
+	 * Holds the Packets of a reliable datagram that arrived ahead of a missing datagram on this channel.
+	 * Datagrams that have already been delivered, or are too far ahead, are discarded.
+	 * @param number The sequence number of the datagram.
+	 * @param packets The Packets read from the datagram.
+	 */
+	public void hold(int number, Packet[] packets) {
+
+		if(number - lastReceived <= 0 || number - lastReceived > bufferSize)
+			return;
+
+		if(held == null)
+			held = new ReorderBuffer(bufferSize);
+
+		held.put(number, packets);
+	}
+
+	/**
+	 * Takes the Packets of the next datagram on this channel, if it is being held.
+	 * @return The Packets of the next datagram, or null if it has not been received.
+	 */
+	public Packet[] next() {
+
+		if(held == null || held.isEmpty())
+			return null;
+
+		Packet[] packets = held.take(lastReceived + 1);
+		if(packets != null)
+			++lastReceived;
+
+		return packets;
+	}
+
+	/**
+	 * Discards every datagram held by this channel.
+	 */
+	public void clear() {
+
+		if(held != null)
+			held.clear();
+	}
+}
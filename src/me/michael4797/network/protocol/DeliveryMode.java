@@ -0,0 +1,59 @@
+package me.michael4797.network.protocol;
+
+/**
+ * Determines how Packets sent on a channel of a {@link me.michael4797.network.Session Session} are
+ * delivered. Every channel has its own sequence, so Packets on one channel are never held back waiting
+ * for Packets on another. Protocols that are reliable and ordered by nature deliver every channel as
+ * {@link #RELIABLE_ORDERED}.
+ * @see me.michael4797.network.PacketReceiver#setChannels(DeliveryMode...)
+ */
+public enum DeliveryMode {
+
+	/**
+	 * Packets are resent until received, and are delivered in the order they were sent.
+	 */
+	RELIABLE_ORDERED(true, true),
+
+	/**
+	 * Packets are resent until received, and are delivered as soon as they arrive.
+	 */
+	RELIABLE_UNORDERED(true, false),
+
+	/**
+	 * Packets may be lost, and any that arrive after a more recently sent Packet are discarded.
+	 */
+	UNRELIABLE_SEQUENCED(false, true),
+
+	/**
+	 * Packets may be lost, and are delivered as soon as they arrive.
+	 */
+	UNRELIABLE(false, false);
+
+	private final boolean reliable;
+	private final boolean sequenced;
+
+
+	private DeliveryMode(boolean reliable, boolean sequenced) {
+
+		this.reliable = reliable;
+		this.sequenced = sequenced;
+	}
+
+	/**
+	 * Whether Packets sent in this mode are resent until received.
+	 * @return True if this mode is reliable.
+	 */
+	public boolean isReliable() {
+
+		return reliable;
+	}
+
+	/**
+	 * Whether Packets sent in this mode are numbered, so their order is known by the remote client.
+	 * @return True if this mode is sequenced.
+	 */
+	public boolean isSequenced() {
+
+		return sequenced;
+	}
+}
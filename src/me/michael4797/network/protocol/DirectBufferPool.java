@@ -0,0 +1,70 @@
+package me.michael4797.network.protocol;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * A convenience class used by the channel based {@link TransportProtocol TransportProtocols}.
+ * This class keeps a pool of direct {@link ByteBuffer ByteBuffers} of a fixed capacity so that
+ * datagrams can be copied to and from the kernel without allocating a new buffer for each one.
+ */
+public class DirectBufferPool {
+
+	private final ArrayBlockingQueue<ByteBuffer> buffers;
+	private final int capacity;
+
+	/**
+	 * Creates an empty DirectBufferPool whose buffers have the specified capacity, retaining
+	 * up to 64 free buffers.
+	 * @param capacity The capacity of every buffer in this DirectBufferPool.
+	 */
+	public DirectBufferPool(int capacity) {
+
+		this(capacity, 64);
+	}
+
+	/**
+	 * Creates an empty DirectBufferPool whose buffers have the specified capacity.
+	 * @param capacity The capacity of every buffer in this DirectBufferPool.
+	 * @param maxFree The maximum number of free buffers retained by this DirectBufferPool.
+	 * Buffers released while the pool is full are left to the garbage collector.
+	 */
+	public DirectBufferPool(int capacity, int maxFree) {
+
+		this.capacity = capacity;
+		buffers = new ArrayBlockingQueue<>(maxFree);
+	}
+
+	/**
+	 * Takes a cleared buffer from this DirectBufferPool, allocating a new one if the pool is empty.
+	 * The buffer should be returned by a call to {@link #release(ByteBuffer)} once it is no longer in use.
+	 * @return A cleared direct buffer.
+	 */
+	public ByteBuffer acquire() {
+
+		ByteBuffer buffer = buffers.poll();
+		if(buffer == null)
+			return ByteBuffer.allocateDirect(capacity);
+
+		buffer.clear();
+		return buffer;
+	}
+
+	/**
+	 * Returns a buffer taken by {@link #acquire()} to this DirectBufferPool.
+	 * @param buffer The buffer to return.
+	 */
+	public void release(ByteBuffer buffer) {
+
+		buffers.offer(buffer);
+	}
+
+	/**
+	 * Gets the capacity of the buffers in this DirectBufferPool.
+	 * @return The buffer capacity.
+	 */
+	public int getCapacity() {
+
+		return capacity;
+	}
+}
@@ -0,0 +1,66 @@
+package me.michael4797.network.protocol;
+
+import me.michael4797.network.PacketReceiver;
+import me.michael4797.network.packet.Packet;
+import me.michael4797.util.BinaryWriter;
+
+/**
+ * A Packet that has already been written, along with its ID, by a {@link PacketReceiver}. The encoded
+ * bytes are immutable, so a single EncodedPacket may be sent to any number of {@link SessionHandle SessionHandles}
+ * of the same PacketReceiver, without writing the Packet again for each of them.
+ */
+public final class EncodedPacket {
+
+	private final Packet packet;
+	private final byte[] data;
+
+	/**
+	 * Writes the specified Packet using the specified PacketReceiver.
+	 * @param packet The Packet to encode.
+	 * @param receiver The PacketReceiver whose Packet IDs are used.
+	 */
+	public EncodedPacket(Packet packet, PacketReceiver<?> receiver) {
+
+		BinaryWriter writer = new BinaryWriter();
+		receiver.writePacketID(packet, writer);
+		receiver.writePacket(packet, writer);
+		this.packet = packet;
+		data = writer.getData();
+	}
+
+	/**
+	 * Gets the Packet that was encoded.
+	 * @return The Packet.
+	 */
+	public Packet getPacket() {
+
+		return packet;
+	}
+
+	/**
+	 * Gets the number of encoded bytes, including the Packet ID.
+	 * @return The encoded length.
+	 */
+	public int getLength() {
+
+		return data.length;
+	}
+
+	/**
+	 * Appends the encoded bytes to the specified BinaryWriter. The space is first reserved
+	 * through the writer, so that it grows as needed, then the bytes are copied over it.
+	 * @param writer The BinaryWriter to which the Packet is appended.
+	 */
+	public void writeTo(BinaryWriter writer) {
+
+		int start = writer.getPosition();
+		int i = 0;
+		for(; i + 4 <= data.length; i += 4)
+			writer.writeInt(0);
+
+		for(; i < data.length; ++i)
+			writer.writeByte((byte) 0);
+
+		System.arraycopy(data, 0, writer.getRawData(), start, data.length);
+	}
+}
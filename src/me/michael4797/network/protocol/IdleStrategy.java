@@ -0,0 +1,84 @@
+package me.michael4797.network.protocol;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A convenience class used by polling {@link TransportProtocol TransportProtocols} to wait
+ * for work that cannot signal its arrival. Each call to {@link #idle()} first busy spins,
+ * then yields, then parks for exponentially increasing periods, up to a maximum. A call
+ * to {@link #reset()} returns to busy spinning once work has been found.
+ */
+public class IdleStrategy {
+
+	private final int spins;
+	private final int yields;
+	private final long minParkNanos;
+	private final long maxParkNanos;
+	private int count;
+	private long parkNanos;
+
+	/**
+	 * Creates an IdleStrategy that spins 1000 times, yields 100 times, then parks for
+	 * between 1 microsecond and 1 millisecond.
+	 */
+	public IdleStrategy() {
+
+		this(1000, 100, 1000L, 1000000L);
+	}
+
+	/**
+	 * Creates an IdleStrategy with the specified backoff.
+	 * @param spins The number of idle calls that busy spin.
+	 * @param yields The number of idle calls that yield, after spinning.
+	 * @param minParkNanos The first park duration, after yielding.
+	 * @param maxParkNanos The maximum park duration.
+	 */
+	public IdleStrategy(int spins, int yields, long minParkNanos, long maxParkNanos) {
+
+		this.spins = spins;
+		this.yields = yields;
+		this.minParkNanos = minParkNanos;
+		this.maxParkNanos = maxParkNanos;
+		parkNanos = minParkNanos;
+	}
+
+	/**
+	 * Waits for a short period, which grows the longer no work has been found.
+	 */
+	public void idle() {
+
+		if(count < spins) {
+
+			++count;
+			Thread.onSpinWait();
+		}
+		else if(count < spins + yields) {
+
+			++count;
+			Thread.yield();
+		}
+		else {
+
+			LockSupport.parkNanos(parkNanos);
+			parkNanos = Math.min(parkNanos << 1, maxParkNanos);
+		}
+	}
+
+	/**
+	 * Returns to busy spinning. Should be called whenever work has been found.
+	 */
+	public void reset() {
+
+		count = 0;
+		parkNanos = minParkNanos;
+	}
+
+	/**
+	 * Checks whether this IdleStrategy has progressed past spinning and yielding.
+	 * @return True if subsequent calls to {@link #idle()} will park.
+	 */
+	public boolean isParking() {
+
+		return count >= spins + yields;
+	}
+}
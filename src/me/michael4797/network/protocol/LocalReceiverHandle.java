@@ -0,0 +1,227 @@
+package me.michael4797.network.protocol;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import me.michael4797.network.PacketReceiver;
+
+/**
+ * A {@link ReceiverHandle} that connects PacketReceivers within the same JVM. Ports are
+ * claimed in a static registry rather than from the operating system, and data is handed
+ * directly from the sending {@link LocalSessionHandle} to the queue of the receiving
+ * LocalReceiverHandle, where it is dispatched by the Thread that invokes {@link #receive()}.
+ */
+public class LocalReceiverHandle implements ReceiverHandle{
+
+	private static final ConcurrentHashMap<Integer, LocalReceiverHandle> BOUND = new ConcurrentHashMap<>();
+	private static final AtomicInteger NEXT_PORT = new AtomicInteger(49152);
+
+	protected final PacketReceiver<?> receiver;
+	protected final int port;
+	protected final boolean serialize;
+	protected final HashMap<InetSocketAddress, LocalSessionHandle> sessions = new HashMap<>();
+	protected final MpscQueue<Runnable> deliveries = new MpscQueue<>();
+	protected final AtomicBoolean parked = new AtomicBoolean();
+	protected final Consumer<Runnable> dispatch = Runnable::run;
+	protected volatile Thread dispatcher;
+	protected volatile boolean closed;
+
+
+	public LocalReceiverHandle(int port, PacketReceiver<?> receiver, boolean serialize) {
+
+		this.receiver = receiver;
+		this.serialize = serialize;
+		if(port != 0) {
+
+			if(BOUND.putIfAbsent(port, this) != null)
+				throw new RuntimeException("Error initializing local port", new IllegalStateException("Port " + port + " is already in use"));
+
+			this.port = port;
+			return;
+		}
+
+		for(int attempt = 0;; ++attempt) {
+
+			if(attempt == 16384)
+				throw new RuntimeException("Error initializing local port", new IllegalStateException("No free local port"));
+
+			int next = NEXT_PORT.getAndUpdate((p) -> p == 65535 ? 49152 : p + 1);
+			if(BOUND.putIfAbsent(next, this) == null) {
+
+				this.port = next;
+				return;
+			}
+		}
+	}
+
+
+	protected static InetSocketAddress address(int port) {
+
+		return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+	}
+
+
+	@Override
+	public int getPort() {
+
+		return port;
+	}
+
+
+	@Override
+	public SessionHandle openSession(InetSocketAddress to) {
+
+		InetSocketAddress address = address(to.getPort());
+		synchronized(this) {
+
+			LocalSessionHandle handle = sessions.get(address);
+			if(handle != null)
+				return handle;
+
+			LocalReceiverHandle remote = BOUND.get(to.getPort());
+			if(remote == null || remote.closed || closed)
+				throw new RuntimeException("Connection refused, no local receiver on port " + to.getPort());
+
+			handle = new LocalSessionHandle(address, this);
+			LocalSessionHandle peer = new LocalSessionHandle(address(port), remote);
+			handle.peer = peer;
+			peer.peer = handle;
+			sessions.put(address, handle);
+			remote.deliver(() -> remote.accept(peer));
+			return handle;
+		}
+	}
+
+
+	@Override
+	public CompletableFuture<SessionHandle> openSessionAsync(InetSocketAddress to) {
+
+		try {
+			return CompletableFuture.completedFuture(openSession(to));
+		} catch (RuntimeException e) {
+			return CompletableFuture.failedFuture(e);
+		}
+	}
+
+
+	protected void accept(LocalSessionHandle handle) {
+
+		synchronized(this) {
+
+			if(closed || handle.peer.closed) {
+
+				handle.close();
+				return;
+			}
+
+			LocalSessionHandle old = sessions.put(handle.getAddress(), handle);
+			if(old != null) {
+
+				old.close();
+				receiver.onDisconnect(old);
+			}
+		}
+
+		receiver.onConnect(handle);
+	}
+
+
+	protected void disconnect(LocalSessionHandle handle) {
+
+		synchronized(this) {
+
+			if(sessions.get(handle.getAddress()) != handle)
+				return;
+		}
+
+		closeSession(handle);
+		receiver.onDisconnect(handle);
+	}
+
+
+	/**
+	 * Queues the specified task to be run by the Thread receiving for this LocalReceiverHandle.
+	 * @param task The task to run.
+	 */
+	protected void deliver(Runnable task) {
+
+		if(closed)
+			return;
+
+		deliveries.offer(task);
+		if(parked.get() && parked.compareAndSet(true, false))
+			LockSupport.unpark(dispatcher);
+	}
+
+
+	@Override
+	public SessionHandle getSession(InetSocketAddress to) {
+
+		synchronized(this) {
+
+			return sessions.get(address(to.getPort()));
+		}
+	}
+
+
+	@Override
+	public void closeSession(SessionHandle handle) {
+
+		synchronized(this) {
+
+			handle.close();
+			if(sessions.get(handle.getAddress()) == handle)
+				sessions.remove(handle.getAddress());
+		}
+	}
+
+
+	@Override
+	public void receive() {
+
+		dispatcher = Thread.currentThread();
+		while(!closed) {
+
+			if(deliveries.drain(dispatch) > 0)
+				continue;
+
+			parked.set(true);
+			if(deliveries.isEmpty() && !closed)
+				LockSupport.park(this);
+
+			parked.set(false);
+		}
+	}
+
+
+	@Override
+	public void close() {
+
+		ArrayList<LocalSessionHandle> closing;
+		synchronized(this) {
+
+			if(closed)
+				return;
+
+			closed = true;
+			BOUND.remove(port, this);
+			closing = new ArrayList<>(sessions.values());
+			sessions.clear();
+		}
+
+		for(LocalSessionHandle handle: closing)
+			handle.close();
+
+		Thread dispatcher = this.dispatcher;
+		if(dispatcher != null)
+			LockSupport.unpark(dispatcher);
+	}
+}
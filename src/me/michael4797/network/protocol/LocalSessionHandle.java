@@ -0,0 +1,183 @@
+package me.michael4797.network.protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.concurrent.locks.ReentrantLock;
+
+import me.michael4797.network.PacketReceiver;
+import me.michael4797.network.packet.Packet;
+import me.michael4797.util.BinaryReader;
+import me.michael4797.util.BinaryWriter;
+
+public class LocalSessionHandle implements SessionHandle{
+
+	protected final LocalReceiverHandle handle;
+	protected final InetSocketAddress address;
+	protected final BinaryWriter writer;
+	protected final ArrayList<Packet> pending = new ArrayList<>();
+	protected final ReentrantLock lock = new ReentrantLock();
+	protected LocalSessionHandle peer;
+	protected volatile boolean closed;
+
+
+	public LocalSessionHandle(InetSocketAddress address, LocalReceiverHandle handle) {
+
+		this.address = address;
+		this.handle = handle;
+		writer = handle.serialize ? new BinaryWriter() : null;
+	}
+
+
+	protected void readPackets(byte[] data) {
+
+		if(closed)
+			return;
+
+		BinaryReader reader = new BinaryReader(data, 0, data.length);
+		try {
+			while(reader.hasMoreData()) {
+
+				int id = handle.receiver.readPacketID(reader);
+				Packet packet = handle.receiver.readPacket(id, reader);
+				handle.receiver.onReceive(this, packet);
+			}
+		} catch (Throwable t) {
+
+			System.err.println("Error reading packet from client " + address + ": ");
+			t.printStackTrace();
+		}
+	}
+
+
+	protected void receivePackets(Packet[] packets) {
+
+		for(Packet packet: packets) {
+
+			if(closed)
+				return;
+
+			handle.receiver.onReceive(this, packet);
+		}
+	}
+
+
+	@Override
+	public PacketReceiver<?> getReceiver() {
+
+		return handle.receiver;
+	}
+
+
+	@Override
+	public InetSocketAddress getAddress() {
+
+		return address;
+	}
+
+
+	@Override
+	public int getBufferedBytes() {
+
+		return writer == null ? pending.size() : writer.getPosition();
+	}
+
+
+	@Override
+	public void forceReliability(boolean reliable) throws IOException {}
+
+
+	@Override
+	public void sendPacket(Packet packet) throws IOException {
+
+		lock.lock();
+		try {
+			if(writer == null) {
+
+				handle.receiver.getPacketID(packet);
+				pending.add(packet);
+				return;
+			}
+
+			int startIndex = writer.getPosition();
+			handle.receiver.writePacketID(packet, writer);
+			handle.receiver.writePacket(packet, writer);
+
+			if(startIndex > 0 && writer.getPosition() > handle.receiver.getMaxPacketSize()) {
+
+				writer.setPosition(startIndex);
+				launchPacket();
+				handle.receiver.writePacketID(packet, writer);
+				handle.receiver.writePacket(packet, writer);
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public void sendPacket(EncodedPacket packet) throws IOException {
+
+		lock.lock();
+		try {
+			if(writer == null) {
+
+				pending.add(packet.getPacket());
+				return;
+			}
+
+			if(writer.hasData() && writer.getPosition() + packet.getLength() > handle.receiver.getMaxPacketSize())
+				launchPacket();
+
+			packet.writeTo(writer);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public void launchPacket() throws IOException {
+
+		lock.lock();
+		try {
+			LocalSessionHandle peer = this.peer;
+			if(closed || peer.closed)
+				throw new IOException("Connection to " + address + " is closed");
+
+			if(writer == null) {
+
+				if(pending.isEmpty())
+					return;
+
+				Packet[] packets = pending.toArray(new Packet[0]);
+				pending.clear();
+				peer.handle.deliver(() -> peer.receivePackets(packets));
+				return;
+			}
+
+			if(!writer.hasData())
+				return;
+
+			byte[] data = writer.getData();
+			writer.setPosition(0);
+			peer.handle.deliver(() -> peer.readPackets(data));
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public void close() {
+
+		if(closed)
+			return;
+
+		closed = true;
+		LocalSessionHandle peer = this.peer;
+		if(peer != null && !peer.closed)
+			peer.handle.deliver(() -> peer.handle.disconnect(peer));
+	}
+}
@@ -0,0 +1,103 @@
+package me.michael4797.network.protocol;
+
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * A lock-free, unbounded, multi-producer single-consumer queue. Any number of threads may
+ * call {@link #offer(Object)} concurrently, each call costing a single atomic exchange.
+ * Only one thread at a time may call {@link #poll()}, {@link #drain(Consumer)} or {@link #isEmpty()}.
+ * @param <T> The type of element held in this queue.
+ */
+public class MpscQueue<T> {
+
+	private final AtomicReference<Node<T>> tail;
+	private Node<T> head;
+
+	/**
+	 * Creates an empty MpscQueue.
+	 */
+	public MpscQueue() {
+
+		head = new Node<>(null);
+		tail = new AtomicReference<>(head);
+	}
+
+	/**
+	 * Adds the specified element to the end of this queue. This method may be called from
+	 * any thread.
+	 * @param value The element to add.
+	 */
+	public void offer(T value) {
+
+		if(value == null)
+			throw new NullPointerException("MpscQueue does not accept null elements");
+
+		Node<T> node = new Node<>(value);
+		tail.getAndSet(node).next = node;
+	}
+
+	/**
+	 * Removes and returns the element at the front of this queue. This method must only
+	 * be called from the consumer thread.
+	 * @return The element at the front of the queue, or null if the queue is empty.
+	 */
+	public T poll() {
+
+		Node<T> next = head.next;
+		if(next == null) {
+
+			if(tail.get() == head)
+				return null;
+
+			while((next = head.next) == null)
+				Thread.onSpinWait();
+		}
+
+		T value = next.value;
+		next.value = null;
+		head = next;
+		return value;
+	}
+
+	/**
+	 * Removes every element currently in this queue, passing each one to the specified
+	 * Consumer in order. This method must only be called from the consumer thread.
+	 * @param consumer The Consumer receiving each element.
+	 * @return The number of elements removed.
+	 */
+	public int drain(Consumer<? super T> consumer) {
+
+		int count = 0;
+		T value;
+		while((value = poll()) != null) {
+
+			consumer.accept(value);
+			++count;
+		}
+
+		return count;
+	}
+
+	/**
+	 * Checks whether this queue is empty. This method must only be called from the consumer thread.
+	 * @return True if the queue has no elements.
+	 */
+	public boolean isEmpty() {
+
+		return head.next == null && tail.get() == head;
+	}
+
+
+	private static final class Node<T> {
+
+		private T value;
+		private volatile Node<T> next;
+
+
+		private Node(T value) {
+
+			this.value = value;
+		}
+	}
+}
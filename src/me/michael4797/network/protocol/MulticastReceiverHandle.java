@@ -0,0 +1,75 @@
+package me.michael4797.network.protocol;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+import java.net.StandardSocketOptions;
+
+import me.michael4797.network.PacketReceiver;
+
+/**
+ * A {@link UDPReceiverHandle} whose socket is a member of a multicast group. If bound to a specific port, the socket
+ * joins the group and receives every datagram published to the group on that port, including those published from
+ * the same machine, as multicast loopback is enabled. If bound to a wildcard port, the socket only publishes. Opening a
+ * session to a multicast address returns a {@link MulticastSessionHandle}, which sends each datagram once to the whole group.
+ */
+public class MulticastReceiverHandle extends UDPReceiverHandle{
+
+	protected final InetAddress group;
+
+
+	public MulticastReceiverHandle(int port, PacketReceiver<?> receiver, InetAddress group, NetworkInterface networkInterface) {
+
+		super(bind(port, group, networkInterface), receiver);
+		this.group = group;
+	}
+
+
+	private static MulticastSocket bind(int port, InetAddress group, NetworkInterface networkInterface) {
+
+		if(!group.isMulticastAddress())
+			throw new IllegalArgumentException(group + " is not a multicast address");
+
+		MulticastSocket socket = null;
+		try {
+
+			socket = new MulticastSocket(port);
+			socket.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+			if(networkInterface != null)
+				socket.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+
+			if(port != 0)
+				socket.joinGroup(new InetSocketAddress(group, port), networkInterface);
+
+			return socket;
+		} catch (IOException e) {
+
+			if(socket != null)
+				socket.close();
+
+			throw new RuntimeException("Error initializing multicast socket", e);
+		}
+	}
+
+
+	/**
+	 * Gets the multicast group this ReceiverHandle publishes to, and receives from if bound to a specific port.
+	 * @return The multicast group.
+	 */
+	public InetAddress getGroup() {
+
+		return group;
+	}
+
+
+	@Override
+	protected UDPSessionHandle createSession(InetSocketAddress to) {
+
+		if(to.getAddress() != null && to.getAddress().isMulticastAddress())
+			return new MulticastSessionHandle(to, this);
+
+		return super.createSession(to);
+	}
+}
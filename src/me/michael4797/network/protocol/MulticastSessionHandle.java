@@ -0,0 +1,34 @@
+package me.michael4797.network.protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+import me.michael4797.network.packet.Packet;
+
+/**
+ * A {@link UDPSessionHandle} that publishes to a multicast group. Reliability can not be
+ * enforced for a group, so every Packet is sent unreliably, and Packets sent on a reliable
+ * channel are sent on the default stream.
+ */
+public class MulticastSessionHandle extends UDPSessionHandle{
+
+
+	public MulticastSessionHandle(InetSocketAddress group, MulticastReceiverHandle handle) {
+
+		super(group, handle);
+	}
+
+
+	@Override
+	public void forceReliability(boolean reliable) throws IOException {}
+
+
+	@Override
+	public void sendPacket(Packet packet, int channel) throws IOException {
+
+		if(getChannel(channel).mode.isReliable())
+			sendPacket(packet);
+		else
+			super.sendPacket(packet, channel);
+	}
+}
@@ -0,0 +1,64 @@
+package me.michael4797.network.protocol;
+
+/**
+ * A loss based {@link CongestionControl}, in the style of TCP NewReno. The window grows by the acknowledged
+ * bytes during slow start, then by one datagram per window, and is halved whenever loss is detected. If
+ * the retransmission timeout expires, the window collapses to a single datagram and slow start begins again.
+ */
+public class NewRenoCongestionControl implements CongestionControl{
+
+	protected final int datagramSize;
+	protected int window;
+	protected int threshold = Integer.MAX_VALUE;
+	protected int increase;
+
+	/**
+	 * Creates a NewRenoCongestionControl with an initial window of up to ten datagrams.
+	 * @param datagramSize The largest datagram size of the connection, in bytes.
+	 */
+	public NewRenoCongestionControl(int datagramSize) {
+
+		this.datagramSize = datagramSize;
+		window = Math.min(10 * datagramSize, Math.max(2 * datagramSize, 14600));
+	}
+
+
+	@Override
+	public int getWindow() {
+
+		return window;
+	}
+
+
+	@Override
+	public void onAcknowledged(int bytes, long rtt, RttEstimator estimator) {
+
+		if(window < threshold) {
+
+			grow(bytes);
+			return;
+		}
+
+		increase += bytes;
+		if(increase >= window) {
+
+			increase -= window;
+			grow(datagramSize);
+		}
+	}
+
+
+	@Override
+	public void onLoss(boolean timeout) {
+
+		threshold = Math.max(window / 2, 2 * datagramSize);
+		window = timeout ? datagramSize : threshold;
+		increase = 0;
+	}
+
+
+	protected void grow(int bytes) {
+
+		window = (int) Math.min(Integer.MAX_VALUE / 2, (long) window + bytes);
+	}
+}
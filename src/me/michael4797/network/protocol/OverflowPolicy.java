@@ -0,0 +1,26 @@
+package me.michael4797.network.protocol;
+
+/**
+ * Determines what a {@link SendQueue} does when launching more Packet data would exceed
+ * its high watermark.
+ * @see me.michael4797.network.PacketReceiver#setOverflowPolicy(OverflowPolicy)
+ */
+public enum OverflowPolicy {
+
+	/**
+	 * The launching Thread blocks until the queue has drained below its low watermark.
+	 */
+	BLOCK,
+
+	/**
+	 * The oldest queued batches containing only unreliably sent Packets are dropped to make room.
+	 * If not enough room can be made, new unreliable data is dropped, while reliable data is
+	 * queued regardless.
+	 */
+	DROP_UNRELIABLE,
+
+	/**
+	 * The {@link me.michael4797.network.Session Session} is disconnected.
+	 */
+	DISCONNECT
+}
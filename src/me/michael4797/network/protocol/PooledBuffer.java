@@ -0,0 +1,103 @@
+package me.michael4797.network.protocol;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A reference counted byte array taken from a {@link BufferPool}. A PooledBuffer starts
+ * with a single reference, held by whoever acquired it. Every additional holder must call
+ * {@link #retain()}, and every holder must call {@link #release()} exactly once when it no
+ * longer needs the data. When the last reference is released, the array is returned to its
+ * BufferPool and must no longer be read or written.
+ */
+public class PooledBuffer {
+
+	private final BufferPool pool;
+	private final byte[] data;
+	private final AtomicInteger references = new AtomicInteger();
+	private int length;
+
+
+	PooledBuffer(BufferPool pool, byte[] data) {
+
+		this.pool = pool;
+		this.data = data;
+	}
+
+	/**
+	 * Wraps the specified array in a PooledBuffer that does not belong to any {@link BufferPool}.
+	 * Releasing the returned buffer simply discards the array.
+	 * @param data The array to wrap.
+	 * @return A PooledBuffer whose length is the length of the array.
+	 */
+	public static PooledBuffer wrap(byte[] data) {
+
+		PooledBuffer buffer = new PooledBuffer(null, data);
+		buffer.references.set(1);
+		buffer.length = data.length;
+		return buffer;
+	}
+
+
+	PooledBuffer acquired(int length) {
+
+		references.set(1);
+		this.length = length;
+		return this;
+	}
+
+	/**
+	 * Gets the backing array of this PooledBuffer. The array may be larger than {@link #getLength()}.
+	 * @return The backing array.
+	 */
+	public byte[] getData() {
+
+		return data;
+	}
+
+	/**
+	 * Gets the number of meaningful bytes at the start of the backing array.
+	 * @return The length of the data held by this PooledBuffer.
+	 */
+	public int getLength() {
+
+		return length;
+	}
+
+	/**
+	 * Sets the number of meaningful bytes at the start of the backing array.
+	 * @param length The length of the data held by this PooledBuffer.
+	 */
+	public void setLength(int length) {
+
+		if(length < 0 || length > data.length)
+			throw new IndexOutOfBoundsException("Length " + length + " exceeds capacity " + data.length);
+
+		this.length = length;
+	}
+
+	/**
+	 * Adds a reference to this PooledBuffer.
+	 * @return This PooledBuffer.
+	 */
+	public PooledBuffer retain() {
+
+		if(references.getAndIncrement() <= 0)
+			throw new IllegalStateException("PooledBuffer retained after being released");
+
+		return this;
+	}
+
+	/**
+	 * Removes a reference from this PooledBuffer, returning it to its {@link BufferPool} if
+	 * no references remain.
+	 */
+	public void release() {
+
+		int remaining = references.decrementAndGet();
+		if(remaining < 0)
+			throw new IllegalStateException("PooledBuffer released too many times");
+
+		if(remaining == 0 && pool != null)
+			pool.recycle(this);
+	}
+}
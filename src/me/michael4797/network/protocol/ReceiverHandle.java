@@ -1,6 +1,7 @@
 package me.michael4797.network.protocol;
 
 import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The base functionality for a {@link me.michael4797.network.PacketReceiver PacketReceiver},
@@ -27,6 +28,22 @@ public interface ReceiverHandle {
 	 */
 	SessionHandle openSession(InetSocketAddress to);
 	
+	/**
+	 * Opens a connection to the specified address without blocking the calling Thread, and
+	 * returns a future completed with the {@link SessionHandle} representing this new connection.
+	 * If a SessionHandle for the specified address already exists, the future is completed with the
+	 * existing SessionHandle. The future may be completed on a Thread belonging to the underlying protocol.
+	 * By default, {@link #openSession(InetSocketAddress)} is called on a new virtual thread, if supported,
+	 * so that many connections may be opened in parallel.
+	 * @param to The address to connect to.
+	 * @return A future completed with a SessionHandle connected to the specified address, or
+	 * completed exceptionally if the connection could not be opened.
+	 */
+	default CompletableFuture<SessionHandle> openSessionAsync(InetSocketAddress to) {
+		
+		return CompletableFuture.supplyAsync(() -> openSession(to), (r) -> VirtualThreads.start(r, "Connect-" + to));
+	}
+	
 	/**
 	 * Gets the {@link SessionHandle} connected to the specified address. If no such
 	 * SessionHandle exists, this method will return null.
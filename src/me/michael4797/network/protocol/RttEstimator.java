@@ -0,0 +1,115 @@
+package me.michael4797.network.protocol;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Estimates the round trip time of a connection from individual samples, following RFC 6298.
+ * The smoothed round trip time and its variance are used to derive the retransmission timeout,
+ * which doubles every time it expires without a new sample being taken. All times are in nanoseconds.
+ */
+public class RttEstimator {
+
+	public static final long INITIAL_RTO = TimeUnit.SECONDS.toNanos(1);
+	public static final long MIN_RTO = TimeUnit.MILLISECONDS.toNanos(20);
+	public static final long MAX_RTO = TimeUnit.SECONDS.toNanos(60);
+	public static final long GRANULARITY = TimeUnit.MILLISECONDS.toNanos(1);
+
+	private long smoothed = -1;
+	private long variance;
+	private int backoff;
+
+	/**
+	 * Updates the estimate with a new round trip time sample. Samples must not be taken from
+	 * data that was sent more than once, since it is unknown which transmission was answered.
+	 * @param rtt The measured round trip time.
+	 */
+	public void sample(long rtt) {
+
+		if(rtt < 0)
+			return;
+
+		if(smoothed < 0) {
+
+			smoothed = rtt;
+			variance = rtt / 2;
+		}
+		else {
+
+			variance = (3 * variance + Math.abs(smoothed - rtt)) / 4;
+			smoothed = (7 * smoothed + rtt) / 8;
+		}
+
+		backoff = 0;
+	}
+
+	/**
+	 * Checks whether any samples have been taken.
+	 * @return True if the round trip time has been measured.
+	 */
+	public boolean hasSample() {
+
+		return smoothed >= 0;
+	}
+
+	/**
+	 * Gets the smoothed round trip time.
+	 * @return The smoothed round trip time, or -1 if no samples have been taken.
+	 */
+	public long getSmoothedRtt() {
+
+		return smoothed;
+	}
+
+	/**
+	 * Gets the variance of the round trip time.
+	 * @return The round trip time variance.
+	 */
+	public long getRttVariance() {
+
+		return variance;
+	}
+
+	/**
+	 * Gets the time after which a sample would be unusually late, without any backoff.
+	 * @return The smoothed round trip time plus four times its variance, or {@link #INITIAL_RTO}
+	 * if no samples have been taken.
+	 */
+	public long getInterval() {
+
+		if(smoothed < 0)
+			return INITIAL_RTO;
+
+		return smoothed + Math.max(GRANULARITY, 4 * variance);
+	}
+
+	/**
+	 * Gets the current retransmission timeout, including any backoff.
+	 * @return The retransmission timeout.
+	 */
+	public long getRto() {
+
+		long rto = Math.max(MIN_RTO, getInterval());
+		for(int i = 0; i < backoff && rto < MAX_RTO; ++i)
+			rto <<= 1;
+
+		return Math.min(MAX_RTO, rto);
+	}
+
+	/**
+	 * Resets the backoff of the retransmission timeout, once the connection makes progress again.
+	 */
+	public void resetBackoff() {
+
+		backoff = 0;
+	}
+
+	/**
+	 * Doubles the retransmission timeout after it expires. The backoff is reset
+	 * once a new sample is taken, or by {@link #resetBackoff()}.
+	 */
+	public void backoff() {
+
+		if(getRto() < MAX_RTO)
+			++backoff;
+	}
+}
@@ -0,0 +1,195 @@
+package me.michael4797.network.protocol;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A convenience class used by the non-blocking {@link TransportProtocol TransportProtocols}.
+ * This class creates a fixed number of event loop threads, each of which owns a single
+ * {@link Selector}. Channels are assigned to the event loops in a round robin fashion, and
+ * every readiness event for a channel is handled by the same event loop thread.
+ */
+public class SelectorPool {
+
+	private static final ThreadLocal<Boolean> EVENT_LOOP = ThreadLocal.withInitial(() -> Boolean.FALSE);
+
+	private final Loop[] loops;
+	private final AtomicInteger next = new AtomicInteger();
+	private volatile boolean closed;
+
+	/**
+	 * Creates a SelectorPool with one event loop per available processor.
+	 * @param name The name prefix used for the event loop threads.
+	 */
+	public SelectorPool(String name) {
+
+		this(name, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a SelectorPool with the specified number of event loops.
+	 * @param name The name prefix used for the event loop threads.
+	 * @param threads The number of event loops to create.
+	 */
+	public SelectorPool(String name, int threads) {
+
+		if(threads < 1)
+			throw new IllegalArgumentException("threads must be positive");
+
+		loops = new Loop[threads];
+		for(int i = 0; i < threads; ++i)
+			loops[i] = new Loop(name + "-" + i);
+	}
+
+	/**
+	 * Checks whether the calling Thread is the event loop of any SelectorPool. Event loop threads
+	 * must never block waiting for a channel to become writable, as they are the ones that write it.
+	 * @return True if called from an event loop thread.
+	 */
+	public static boolean isEventLoop() {
+
+		return EVENT_LOOP.get();
+	}
+
+	/**
+	 * Registers the specified channel with the next event loop in this SelectorPool.
+	 * The channel must already be in non-blocking mode. Registration happens asynchronously
+	 * on the event loop thread, once complete {@link SelectorHandler#onRegister(SelectionKey)}
+	 * is called with the resulting SelectionKey.
+	 * @param channel The channel to register.
+	 * @param ops The initial interest set of the channel.
+	 * @param handler The handler notified when the channel becomes ready.
+	 */
+	public void register(SelectableChannel channel, int ops, SelectorHandler handler) {
+
+		if(closed)
+			throw new IllegalStateException("SelectorPool is closed");
+
+		Loop loop = loops[Math.floorMod(next.getAndIncrement(), loops.length)];
+		loop.execute(() -> {
+
+			try {
+
+				SelectionKey key = channel.register(loop.selector, ops, handler);
+				handler.onRegister(key);
+			} catch (ClosedChannelException e) {}
+		});
+	}
+
+	/**
+	 * Closes every event loop in this SelectorPool along with their Selectors.
+	 * Channels registered with this SelectorPool are not closed.
+	 */
+	public void close() {
+
+		if(closed)
+			return;
+
+		closed = true;
+		for(Loop loop: loops)
+			loop.close();
+	}
+
+	/**
+	 * Receives the readiness events of a channel registered with a {@link SelectorPool}.
+	 * Both methods are always called from the channel's event loop thread.
+	 */
+	public interface SelectorHandler {
+
+		/**
+		 * Called once the channel has been registered with its event loop.
+		 * @param key The SelectionKey of the registered channel.
+		 */
+		void onRegister(SelectionKey key);
+
+		/**
+		 * Called every time the channel is selected for one of its interest operations.
+		 * @param key The SelectionKey of the selected channel.
+		 */
+		void onSelect(SelectionKey key);
+	}
+
+
+	private class Loop implements Runnable{
+
+		private final Selector selector;
+		private final ConcurrentLinkedQueue<Runnable> tasks;
+
+
+		private Loop(String name) {
+
+			try {
+				selector = Selector.open();
+			} catch (IOException e) {
+				throw new RuntimeException("Error initializing selector", e);
+			}
+
+			tasks = new ConcurrentLinkedQueue<>();
+			Thread thread = new Thread(this, name);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+
+		private void execute(Runnable task) {
+
+			tasks.add(task);
+			selector.wakeup();
+		}
+
+
+		private void close() {
+
+			selector.wakeup();
+		}
+
+
+		@Override
+		public void run() {
+
+			EVENT_LOOP.set(Boolean.TRUE);
+			while(!closed) {
+
+				try {
+					selector.select();
+				} catch (IOException e) {
+
+					e.printStackTrace();
+					break;
+				}
+
+				Runnable task;
+				while((task = tasks.poll()) != null)
+					task.run();
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while(keys.hasNext()) {
+
+					SelectionKey key = keys.next();
+					keys.remove();
+					if(!key.isValid())
+						continue;
+
+					try {
+						((SelectorHandler) key.attachment()).onSelect(key);
+					} catch (Throwable t) {
+
+						System.err.println("Error handling selected channel: ");
+						t.printStackTrace();
+					}
+				}
+			}
+
+			tasks.clear();
+			try {
+				selector.close();
+			} catch (IOException e) {}
+		}
+	}
+}
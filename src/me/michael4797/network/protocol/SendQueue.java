@@ -0,0 +1,374 @@
+package me.michael4797.network.protocol;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import me.michael4797.network.PacketReceiver;
+
+/**
+ * A bounded queue of outgoing Packet data for a single {@link SessionHandle}, drained by a single
+ * Thread that writes it to the underlying connection. The number of queued bytes is tracked against
+ * the watermarks of the {@link PacketReceiver}. Once the high watermark is exceeded the SessionHandle
+ * becomes unwritable until the queue drains to the low watermark, and each change is reported to
+ * {@link PacketReceiver#onWritabilityChanged(SessionHandle, boolean)}.
+ * @see OverflowPolicy
+ */
+public class SendQueue {
+
+	protected final SessionHandle handle;
+	protected final int lowWatermark;
+	protected final int highWatermark;
+	protected final OverflowPolicy policy;
+	protected final ArrayDeque<Entry> queue = new ArrayDeque<>();
+	protected final ReentrantLock lock = new ReentrantLock();
+	protected final Condition available = lock.newCondition();
+	protected final Condition drained = lock.newCondition();
+	protected long pending;
+	protected boolean inFlight;
+	protected boolean admitting;
+	protected boolean closed;
+	protected volatile boolean writable = true;
+
+	/**
+	 * Creates a SendQueue for the specified SessionHandle, using the watermarks and {@link OverflowPolicy}
+	 * of its PacketReceiver.
+	 * @param handle The SessionHandle whose data is queued.
+	 */
+	public SendQueue(SessionHandle handle) {
+
+		PacketReceiver<?> receiver = handle.getReceiver();
+		this.handle = handle;
+		lowWatermark = receiver.getLowWatermark();
+		highWatermark = receiver.getHighWatermark();
+		policy = receiver.getOverflowPolicy();
+	}
+
+	/**
+	 * Whether the number of queued bytes is below the high watermark, or has drained back to the
+	 * low watermark since exceeding it.
+	 * @return True if this queue is writable.
+	 */
+	public boolean isWritable() {
+
+		return writable;
+	}
+
+	/**
+	 * Gets the number of bytes queued but not yet fully written.
+	 * @return The number of pending bytes.
+	 */
+	public long getPendingBytes() {
+
+		lock.lock();
+		try {
+			return pending;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * If this queue uses {@link OverflowPolicy#BLOCK}, waits until it is writable. This method must
+	 * not be called by the Thread that drains this queue.
+	 * @throws IOException If this queue is closed, or the calling Thread is interrupted while waiting.
+	 */
+	public void awaitWritable() throws IOException {
+
+		if(policy != OverflowPolicy.BLOCK || writable)
+			return;
+
+		lock.lock();
+		try {
+			while(!writable && !closed)
+				drained.await();
+
+			if(closed)
+				throw new IOException("Connection to " + handle.getAddress() + " is closed");
+		} catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted waiting for the send queue of " + handle.getAddress());
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Applies the {@link OverflowPolicy} to a message of the specified length as a whole, before it is offered
+	 * as several pieces. Until {@link #admitted()} is called, the pieces are queued without the OverflowPolicy
+	 * being applied to each of them, so that a message is never cut off partway through by the high watermark.
+	 * This method never blocks.
+	 * @param length The length of the message.
+	 * @throws IOException If this queue is closed, or the message would exceed the high watermark
+	 * under {@link OverflowPolicy#DISCONNECT}.
+	 */
+	public void admit(long length) throws IOException {
+
+		Boolean changed;
+		lock.lock();
+		try {
+			if(closed)
+				throw new IOException("Connection to " + handle.getAddress() + " is closed");
+
+			if(pending + length > highWatermark && pending > 0) {
+
+				if(policy == OverflowPolicy.DISCONNECT)
+					throw new IOException("Send queue to " + handle.getAddress() + " exceeded " + highWatermark + " bytes");
+
+				if(policy == OverflowPolicy.DROP_UNRELIABLE)
+					dropUnreliable(pending + length - highWatermark);
+			}
+
+			admitting = true;
+			changed = update();
+		} finally {
+			lock.unlock();
+		}
+
+		fire(changed);
+	}
+
+	/**
+	 * Ends the admission started by {@link #admit(long)}, once every piece of the message has been offered.
+	 */
+	public void admitted() {
+
+		lock.lock();
+		try {
+			admitting = false;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Adds the specified data to the end of this queue, applying the {@link OverflowPolicy} if
+	 * doing so exceeds the high watermark, unless the data is part of a message admitted by
+	 * {@link #admit(long)}. This method never blocks. Ownership of the data passes to
+	 * this queue, which releases it once written or dropped.
+	 * @param data The data to queue.
+	 * @param reliable Whether the data contains any Packet that was sent reliably.
+	 * @return True if the data was queued, false if it was dropped.
+	 * @throws IOException If this queue is closed, or the high watermark was exceeded
+	 * under {@link OverflowPolicy#DISCONNECT}.
+	 */
+	public boolean offer(PooledBuffer data, boolean reliable) throws IOException {
+
+		boolean queued = true;
+		Boolean changed;
+		lock.lock();
+		try {
+			if(closed) {
+
+				data.release();
+				throw new IOException("Connection to " + handle.getAddress() + " is closed");
+			}
+
+			if(!admitting && pending + data.getLength() > highWatermark && pending > 0) {
+
+				if(policy == OverflowPolicy.DISCONNECT) {
+
+					data.release();
+					throw new IOException("Send queue to " + handle.getAddress() + " exceeded " + highWatermark + " bytes");
+				}
+
+				if(policy == OverflowPolicy.DROP_UNRELIABLE) {
+
+					dropUnreliable(pending + data.getLength() - highWatermark);
+					if(!reliable && pending + data.getLength() > highWatermark && pending > 0)
+						queued = false;
+				}
+			}
+
+			if(queued) {
+
+				queue.add(new Entry(data, reliable));
+				pending += data.getLength();
+				available.signal();
+			}
+			else
+				data.release();
+
+			changed = update();
+		} finally {
+			lock.unlock();
+		}
+
+		fire(changed);
+		return queued;
+	}
+
+
+	private void dropUnreliable(long excess) {
+
+		Iterator<Entry> entries = queue.iterator();
+		if(inFlight && entries.hasNext())
+			entries.next();
+
+		while(excess > 0 && entries.hasNext()) {
+
+			Entry entry = entries.next();
+			if(entry.reliable)
+				continue;
+
+			entries.remove();
+			pending -= entry.data.getLength();
+			excess -= entry.data.getLength();
+			entry.data.release();
+		}
+	}
+
+	/**
+	 * Gets the data at the head of this queue without removing it, and marks it as being written.
+	 * @return The data to write, or null if this queue is empty.
+	 */
+	public PooledBuffer peek() {
+
+		lock.lock();
+		try {
+			Entry entry = queue.peek();
+			if(entry == null)
+				return null;
+
+			inFlight = true;
+			return entry.data;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits until this queue is not empty, then gets the data at its head without removing it,
+	 * and marks it as being written.
+	 * @return The data to write, or null if this queue has been closed.
+	 * @throws InterruptedException If the calling Thread is interrupted while waiting.
+	 */
+	public PooledBuffer take() throws InterruptedException {
+
+		lock.lock();
+		try {
+			while(queue.isEmpty() && !closed)
+				available.await();
+
+			if(closed)
+				return null;
+
+			inFlight = true;
+			return queue.peek().data;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Removes and releases the data at the head of this queue, once it has been fully written.
+	 */
+	public void remove() {
+
+		Boolean changed;
+		lock.lock();
+		try {
+			inFlight = false;
+			Entry entry = queue.poll();
+			if(entry == null)
+				return;
+
+			int length = entry.data.getLength();
+			entry.data.release();
+			if(closed)
+				return;
+
+			pending -= length;
+			changed = update();
+		} finally {
+			lock.unlock();
+		}
+
+		fire(changed);
+	}
+
+	/**
+	 * Whether this queue is empty.
+	 * @return True if there is no data left to write.
+	 */
+	public boolean isEmpty() {
+
+		lock.lock();
+		try {
+			return queue.isEmpty();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Closes this queue, releasing all queued data except any being written, and waking every waiting Thread.
+	 */
+	public void close() {
+
+		lock.lock();
+		try {
+			if(closed)
+				return;
+
+			closed = true;
+			Entry head = inFlight ? queue.poll() : null;
+			for(Entry entry: queue)
+				entry.data.release();
+
+			queue.clear();
+			if(head != null)
+				queue.add(head);
+
+			pending = 0;
+			available.signalAll();
+			drained.signalAll();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	private Boolean update() {
+
+		if(writable && pending > highWatermark) {
+
+			writable = false;
+			return Boolean.FALSE;
+		}
+
+		if(!writable && pending <= lowWatermark) {
+
+			writable = true;
+			drained.signalAll();
+			return Boolean.TRUE;
+		}
+
+		return null;
+	}
+
+
+	private void fire(Boolean changed) {
+
+		if(changed != null && !closed)
+			handle.getReceiver().onWritabilityChanged(handle, changed);
+	}
+
+
+	protected static class Entry{
+
+		protected final PooledBuffer data;
+		protected final boolean reliable;
+
+
+		protected Entry(PooledBuffer data, boolean reliable) {
+
+			this.data = data;
+			this.reliable = reliable;
+		}
+	}
+}
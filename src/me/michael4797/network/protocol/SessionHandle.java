@@ -50,6 +50,36 @@ public interface SessionHandle {
 	 */
 	void sendPacket(Packet packet) throws IOException;
 	
+	/**
+	 * Sends a single packet that has already been encoded, typically as part of a broadcast. This behaves
+	 * identically to {@link #sendPacket(Packet)}, except the encoded bytes are appended rather than writing
+	 * the Packet again. By default, the Packet is simply written again.
+	 * @param packet The next encoded packet to be sent.
+	 * @throws IOException If the call to this method results in Packet data being
+	 * launched, and an error is encountered sending the Packet data via the
+	 * underlying protocol.
+	 */
+	default void sendPacket(EncodedPacket packet) throws IOException {
+		
+		sendPacket(packet.getPacket());
+	}
+	
+	/**
+	 * Sends a single packet on the specified channel, as configured by {@link PacketReceiver#setChannels(DeliveryMode...)}.
+	 * Protocols that do not support independent channels send the packet on their default stream, with the
+	 * reliability of the channel's {@link DeliveryMode}.
+	 * @param packet The next packet to be sent.
+	 * @param channel The channel to send the packet on.
+	 * @throws IOException If the call to this method results in Packet data being
+	 * launched, and an error is encountered sending the Packet data via the
+	 * underlying protocol.
+	 */
+	default void sendPacket(Packet packet, int channel) throws IOException {
+		
+		forceReliability(getReceiver().getChannelMode(channel).isReliable());
+		sendPacket(packet);
+	}
+	
 	/**
 	 * Immediately sends all currently buffered packets to the remote client.
 	 * @throws IOException If an error is encountered sending the Packet data via
@@ -57,6 +87,38 @@ public interface SessionHandle {
 	 */
 	void launchPacket() throws IOException;
 	
+	/**
+	 * Gets the number of bytes written by {@link #sendPacket(Packet)} that have not yet been launched.
+	 * This is used to launch a batch once the next Packet is unlikely to fit within the maximum packet size.
+	 * @return The number of buffered bytes, or -1 if unknown.
+	 */
+	default int getBufferedBytes() {
+		
+		return -1;
+	}
+	
+	/**
+	 * Gets the number of bytes written by {@link #sendPacket(Packet, int)} to the specified channel that have
+	 * not yet been launched. Protocols that do not support independent channels report their default stream.
+	 * @param channel The channel.
+	 * @return The number of buffered bytes, or -1 if unknown.
+	 */
+	default int getBufferedBytes(int channel) {
+		
+		return getBufferedBytes();
+	}
+	
+	/**
+	 * Whether launched Packets can be queued without exceeding the high watermark set on the
+	 * {@link PacketReceiver}. Protocols that do not queue outgoing data are always writable.
+	 * @see SendQueue
+	 * @return True if this SessionHandle is writable.
+	 */
+	default boolean isWritable() {
+		
+		return true;
+	}
+	
 	/**
 	 * Closes this connection and all resources tied to this SessionHandle.
 	 */
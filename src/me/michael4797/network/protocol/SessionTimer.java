@@ -0,0 +1,46 @@
+package me.michael4797.network.protocol;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A single daemon timer thread shared by every {@link SessionHandle} that needs to act after
+ * a delay, such as the delayed acknowledgements of reliable UDP. Timed work is scheduled on the
+ * shared thread instead of each session running a thread of its own, so scheduled tasks must be
+ * short and must never block.
+ */
+public final class SessionTimer {
+
+	private static final ScheduledThreadPoolExecutor TIMER;
+
+	static {
+
+		TIMER = new ScheduledThreadPoolExecutor(1, (r) -> {
+
+			Thread thread = new Thread(r, "SessionTimer");
+			thread.setDaemon(true);
+			return thread;
+		});
+		TIMER.setRemoveOnCancelPolicy(true);
+	}
+
+
+	private SessionTimer() {}
+
+	/**
+	 * Runs the specified task on the shared timer thread once the specified delay elapses.
+	 * @param task The task to run.
+	 * @param delay The delay, in nanoseconds.
+	 * @return A future that may be used to cancel the task, or null if the timer is shut down.
+	 */
+	public static ScheduledFuture<?> schedule(Runnable task, long delay) {
+
+		try {
+			return TIMER.schedule(task, delay, TimeUnit.NANOSECONDS);
+		} catch (RejectedExecutionException e) {
+			return null;
+		}
+	}
+}
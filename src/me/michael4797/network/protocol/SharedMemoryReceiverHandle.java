@@ -0,0 +1,402 @@
+package me.michael4797.network.protocol;
+
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import me.michael4797.network.PacketReceiver;
+
+/**
+ * A {@link ReceiverHandle} that connects processes on the same machine through memory mapped files.
+ * Ports are claimed by locking a port file in the shared memory directory, which is /dev/shm if it
+ * exists, or the temporary directory otherwise. It may be overridden with the
+ * {@value #DIRECTORY_PROPERTY} system property. Each connection is a single file, created by the
+ * connecting client, holding one {@link SharedMemoryRing} in each direction. A single Thread polls
+ * every connection, spinning briefly before parking when no data arrives. The same Thread writes the
+ * batches that were queued because their outgoing ring was full, so it never waits on a remote client.
+ */
+public class SharedMemoryReceiverHandle implements ReceiverHandle{
+
+	public static final String DIRECTORY_PROPERTY = "me.michael4797.network.shm";
+
+	protected static final int MAGIC = 0x4D4E5348;
+	protected static final int FILE_HEADER_SIZE = 64;
+	protected static final int READY = 8;
+	protected static final long ACCEPT_INTERVAL = 10000000L;
+
+	private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+
+	protected final PacketReceiver<?> receiver;
+	protected final Path directory;
+	protected final int port;
+	protected final FileChannel portFile;
+	protected final FileLock portLock;
+	protected final int ringCapacity;
+	protected final HashMap<InetSocketAddress, SharedMemorySessionHandle> sessions = new HashMap<>();
+	protected volatile SharedMemorySessionHandle[] polled = new SharedMemorySessionHandle[0];
+	protected volatile Thread poller;
+	protected volatile boolean closed;
+
+
+	public SharedMemoryReceiverHandle(int port, PacketReceiver<?> receiver) {
+
+		this.receiver = receiver;
+		directory = directory();
+		ringCapacity = Math.max(1 << 20, Integer.highestOneBit(Math.max(1, receiver.getMaxPacketSize() + 8) * 16 - 1) << 1);
+
+		try {
+
+			Files.createDirectories(directory);
+			FileChannel file = null;
+			FileLock lock = null;
+			int bound = port;
+			for(int attempt = 0; lock == null; ++attempt) {
+
+				if(port == 0) {
+
+					if(attempt == 1000)
+						throw new IOException("No free shared memory port");
+
+					bound = ThreadLocalRandom.current().nextInt(49152, 65536);
+				}
+				else if(attempt > 0)
+					throw new IOException("Port " + port + " is already in use");
+
+				file = FileChannel.open(portPath(bound), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+				lock = tryLock(file);
+				if(lock == null)
+					file.close();
+			}
+
+			this.port = bound;
+			portFile = file;
+			portLock = lock;
+		} catch (IOException e) {
+
+			throw new RuntimeException("Error initializing shared memory port", e);
+		}
+	}
+
+
+	private static Path directory() {
+
+		String property = System.getProperty(DIRECTORY_PROPERTY);
+		if(property != null)
+			return Paths.get(property);
+
+		Path shm = Paths.get("/dev/shm");
+		if(Files.isDirectory(shm))
+			return shm.resolve("me.michael4797.network");
+
+		return Paths.get(System.getProperty("java.io.tmpdir"), "me.michael4797.network");
+	}
+
+
+	private static FileLock tryLock(FileChannel file) throws IOException {
+
+		try {
+			return file.tryLock();
+		} catch (OverlappingFileLockException e) {
+			return null;
+		}
+	}
+
+
+	protected Path portPath(int port) {
+
+		return directory.resolve(port + ".port");
+	}
+
+
+	protected Path connectionPath(int from, int to) {
+
+		return directory.resolve(from + "-" + to + ".shm");
+	}
+
+
+	protected static InetSocketAddress address(int port) {
+
+		return new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+	}
+
+
+	@Override
+	public int getPort() {
+
+		return port;
+	}
+
+
+	@Override
+	public SessionHandle openSession(InetSocketAddress to) {
+
+		InetSocketAddress address = address(to.getPort());
+		synchronized(this) {
+
+			SharedMemorySessionHandle handle = sessions.get(address);
+			if(handle != null)
+				return handle;
+
+			try {
+
+				if(!isListening(to.getPort()))
+					throw new IOException("Connection refused, no shared memory receiver on port " + to.getPort());
+
+				Path path = connectionPath(port, to.getPort());
+				Files.deleteIfExists(path);
+				MappedByteBuffer mapping = map(path, ringCapacity);
+				handle = createSession(address, path, mapping, ringCapacity, false);
+				INTS.setRelease(mapping, READY, 1);
+			} catch (IOException e) {
+
+				throw new RuntimeException("Error opening shared memory connection", e);
+			}
+
+			addSession(handle);
+			return handle;
+		}
+	}
+
+
+	protected boolean isListening(int port) throws IOException {
+
+		Path path = portPath(port);
+		if(!Files.exists(path))
+			return false;
+
+		try(FileChannel file = FileChannel.open(path, StandardOpenOption.WRITE)) {
+
+			FileLock lock = tryLock(file);
+			if(lock == null)
+				return true;
+
+			lock.release();
+			return false;
+		}
+	}
+
+
+	protected MappedByteBuffer map(Path path, int capacity) throws IOException {
+
+		long size = FILE_HEADER_SIZE + 2L * (SharedMemoryRing.HEADER_SIZE + capacity);
+		try(FileChannel file = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+			MappedByteBuffer mapping = file.map(FileChannel.MapMode.READ_WRITE, 0, size);
+			mapping.order(ByteOrder.nativeOrder());
+			mapping.putInt(0, MAGIC);
+			mapping.putInt(4, capacity);
+			return mapping;
+		}
+	}
+
+
+	protected SharedMemorySessionHandle createSession(InetSocketAddress address, Path path, MappedByteBuffer mapping, int capacity, boolean accepted) {
+
+		int ringSize = SharedMemoryRing.HEADER_SIZE + capacity;
+		SharedMemoryRing toServer = new SharedMemoryRing(region(mapping, FILE_HEADER_SIZE, ringSize), capacity);
+		SharedMemoryRing toClient = new SharedMemoryRing(region(mapping, FILE_HEADER_SIZE + ringSize, ringSize), capacity);
+		if(accepted)
+			return new SharedMemorySessionHandle(address, path, toServer, toClient, this);
+
+		return new SharedMemorySessionHandle(address, path, toClient, toServer, this);
+	}
+
+
+	private static ByteBuffer region(ByteBuffer mapping, int offset, int length) {
+
+		ByteBuffer region = mapping.duplicate();
+		region.position(offset);
+		region.limit(offset + length);
+		return region.slice();
+	}
+
+
+	protected void addSession(SharedMemorySessionHandle handle) {
+
+		sessions.put(handle.getAddress(), handle);
+		polled = sessions.values().toArray(new SharedMemorySessionHandle[0]);
+	}
+
+
+	@Override
+	public SessionHandle getSession(InetSocketAddress to) {
+
+		synchronized(this) {
+
+			return sessions.get(address(to.getPort()));
+		}
+	}
+
+
+	@Override
+	public void closeSession(SessionHandle handle) {
+
+		synchronized(this) {
+
+			handle.close();
+			if(sessions.remove(handle.getAddress()) != null)
+				polled = sessions.values().toArray(new SharedMemorySessionHandle[0]);
+		}
+	}
+
+
+	protected void accept() {
+
+		try(DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*-" + port + ".shm")) {
+
+			for(Path path: files) {
+
+				String name = path.getFileName().toString();
+				int from;
+				try {
+					from = Integer.parseInt(name.substring(0, name.indexOf('-')));
+				} catch (NumberFormatException e) {
+					continue;
+				}
+
+				InetSocketAddress address = address(from);
+				synchronized(this) {
+
+					if(sessions.containsKey(address))
+						continue;
+				}
+
+				SharedMemorySessionHandle handle = accept(path, address);
+				if(handle == null)
+					continue;
+
+				synchronized(this) {
+
+					addSession(handle);
+					receiver.onConnect(handle);
+				}
+			}
+		} catch (IOException e) {
+
+			if(!closed)
+				e.printStackTrace();
+		}
+	}
+
+
+	protected SharedMemorySessionHandle accept(Path path, InetSocketAddress address) throws IOException {
+
+		try(FileChannel file = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+			if(file.size() < FILE_HEADER_SIZE)
+				return null;
+
+			MappedByteBuffer header = file.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER_SIZE);
+			header.order(ByteOrder.nativeOrder());
+			if(header.getInt(0) != MAGIC || (int) INTS.getAcquire(header, READY) == 0)
+				return null;
+
+			int capacity = header.getInt(4);
+			MappedByteBuffer mapping = file.map(FileChannel.MapMode.READ_WRITE, 0, FILE_HEADER_SIZE + 2L * (SharedMemoryRing.HEADER_SIZE + capacity));
+			SharedMemorySessionHandle handle = createSession(address, path, mapping, capacity, true);
+			if(handle.in.isClosed() || handle.out.isClosed())
+				return null;
+
+			return handle;
+		} catch (java.nio.file.NoSuchFileException e) {
+
+			return null;
+		}
+	}
+
+
+	/**
+	 * Checks whether the calling Thread is the one polling every connection. It must never wait for a
+	 * connection to become writable, as it writes the batches that make connections writable.
+	 * @return True if called by the polling Thread.
+	 */
+	protected boolean isPolling() {
+
+		return Thread.currentThread() == poller;
+	}
+
+
+	@Override
+	public void receive() {
+
+		poller = Thread.currentThread();
+		IdleStrategy idle = new IdleStrategy();
+		long lastAccept = 0;
+		while(!closed) {
+
+			int received = 0;
+			for(SharedMemorySessionHandle handle: polled) {
+
+				int count = handle.receive();
+				if(count < 0) {
+
+					closeSession(handle);
+					receiver.onDisconnect(handle);
+					continue;
+				}
+
+				int sent = handle.flush();
+				if(sent < 0) {
+
+					if(!handle.closed)
+						System.err.println("Error sending packet data to client " + handle.getAddress() + ": Connection stopped reading");
+
+					handle.disconnected();
+				}
+				else
+					received += count + sent;
+			}
+
+			if(received > 0) {
+
+				idle.reset();
+				continue;
+			}
+
+			long time = System.nanoTime();
+			if(time - lastAccept >= ACCEPT_INTERVAL) {
+
+				lastAccept = time;
+				accept();
+			}
+
+			idle.idle();
+		}
+	}
+
+
+	@Override
+	public synchronized void close() {
+
+		if(closed)
+			return;
+
+		closed = true;
+		for(SharedMemorySessionHandle handle: sessions.values())
+			handle.close();
+
+		sessions.clear();
+		polled = new SharedMemorySessionHandle[0];
+
+		try {
+			portLock.release();
+			portFile.close();
+			Files.deleteIfExists(portPath(port));
+		} catch (IOException e) {}
+	}
+}
@@ -0,0 +1,176 @@
+package me.michael4797.network.protocol;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * A single-producer single-consumer ring of variable length records, stored in a region of
+ * memory shared between two processes. The producer and consumer positions are kept on
+ * separate cache lines at the start of the region, followed by a closed flag and the ring data.
+ * Records are prefixed by their length and aligned to 8 bytes. A record that would wrap around
+ * the end of the ring is preceded by a padding marker, so that every record is contiguous.
+ */
+public class SharedMemoryRing {
+
+	public static final int HEADER_SIZE = 192;
+
+	private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+	private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle(int[].class, ByteOrder.nativeOrder());
+	private static final int WRITE_POSITION = 0;
+	private static final int READ_POSITION = 64;
+	private static final int CLOSED = 128;
+	private static final int PADDING = -1;
+
+	private final ByteBuffer buffer;
+	private final ByteBuffer view;
+	private final int capacity;
+	private final int mask;
+
+	/**
+	 * Creates a SharedMemoryRing backed by the specified region. The region must be a direct buffer
+	 * aligned to 8 bytes, holding {@value #HEADER_SIZE} bytes of header followed by the ring data.
+	 * @param region The shared memory region.
+	 * @param capacity The size of the ring data in bytes, which must be a power of two.
+	 */
+	public SharedMemoryRing(ByteBuffer region, int capacity) {
+
+		if(Integer.bitCount(capacity) != 1)
+			throw new IllegalArgumentException("capacity must be a power of two");
+
+		if(region.capacity() < HEADER_SIZE + capacity)
+			throw new IllegalArgumentException("region is too small for a ring of capacity " + capacity);
+
+		buffer = region.order(ByteOrder.nativeOrder());
+		view = buffer.duplicate();
+		this.capacity = capacity;
+		mask = capacity - 1;
+	}
+
+	/**
+	 * Gets the size of the largest record that can be written to this ring.
+	 * @return The maximum record length.
+	 */
+	public int getMaxRecordLength() {
+
+		return capacity / 2 - 8;
+	}
+
+	/**
+	 * Attempts to write a single record to this ring. This method must only be called
+	 * by the producer.
+	 * @param data The array containing the record.
+	 * @param offset The offset of the record within the array.
+	 * @param length The length of the record.
+	 * @return True if the record was written, false if the ring does not have enough space.
+	 */
+	public boolean write(byte[] data, int offset, int length) {
+
+		if(length > getMaxRecordLength())
+			throw new IllegalArgumentException("Record of length " + length + " exceeds the maximum of " + getMaxRecordLength());
+
+		long write = (long) LONGS.getOpaque(buffer, WRITE_POSITION);
+		long read = (long) LONGS.getAcquire(buffer, READ_POSITION);
+		int index = (int) (write & mask);
+		int size = align(4 + length);
+		int toEnd = capacity - index;
+		int needed = size > toEnd ? toEnd + size : size;
+		if(capacity - (write - read) < needed)
+			return false;
+
+		if(size > toEnd) {
+
+			buffer.putInt(HEADER_SIZE + index, PADDING);
+			write += toEnd;
+			index = 0;
+		}
+
+		buffer.putInt(HEADER_SIZE + index, length);
+		view.position(HEADER_SIZE + index + 4);
+		view.put(data, offset, length);
+		LONGS.setRelease(buffer, WRITE_POSITION, write + size);
+		return true;
+	}
+
+	/**
+	 * Reads the length of the next record in this ring, without consuming it. This method must only
+	 * be called by the consumer.
+	 * @return The length of the next record, or -1 if the ring is empty.
+	 */
+	public int peek() {
+
+		long read = (long) LONGS.getOpaque(buffer, READ_POSITION);
+		long write = (long) LONGS.getAcquire(buffer, WRITE_POSITION);
+		if(read == write)
+			return -1;
+
+		int index = (int) (read & mask);
+		int length = buffer.getInt(HEADER_SIZE + index);
+		if(length == PADDING) {
+
+			read += capacity - index;
+			LONGS.setRelease(buffer, READ_POSITION, read);
+			if(read == write)
+				return -1;
+
+			length = buffer.getInt(HEADER_SIZE);
+		}
+
+		return length;
+	}
+
+	/**
+	 * Consumes the next record in this ring, copying it into the specified array. The array must be
+	 * at least as large as the length returned by {@link #peek()}. This method must only be called
+	 * by the consumer.
+	 * @param data The array into which the record is copied, starting at index 0.
+	 * @return The length of the record, or -1 if the ring is empty.
+	 */
+	public int read(byte[] data) {
+
+		int length = peek();
+		if(length < 0)
+			return -1;
+
+		long read = (long) LONGS.getOpaque(buffer, READ_POSITION);
+		int index = (int) (read & mask);
+		view.position(HEADER_SIZE + index + 4);
+		view.get(data, 0, length);
+		LONGS.setRelease(buffer, READ_POSITION, read + align(4 + length));
+		return length;
+	}
+
+	/**
+	 * Gets the total number of bytes the consumer has consumed from this ring, so that
+	 * the producer can tell whether the consumer is still making progress.
+	 * @return The read position.
+	 */
+	public long getReadPosition() {
+
+		return (long) LONGS.getAcquire(buffer, READ_POSITION);
+	}
+
+	/**
+	 * Marks this ring as closed by the producer.
+	 */
+	public void close() {
+
+		INTS.setRelease(buffer, CLOSED, 1);
+	}
+
+	/**
+	 * Checks whether the producer has closed this ring.
+	 * @return True if this ring is closed.
+	 */
+	public boolean isClosed() {
+
+		return (int) INTS.getAcquire(buffer, CLOSED) != 0;
+	}
+
+
+	private static int align(int size) {
+
+		return (size + 7) & ~7;
+	}
+}
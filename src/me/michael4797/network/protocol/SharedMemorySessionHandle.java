@@ -0,0 +1,328 @@
+package me.michael4797.network.protocol;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+import me.michael4797.network.PacketReceiver;
+import me.michael4797.network.packet.Packet;
+import me.michael4797.util.BinaryReader;
+import me.michael4797.util.BinaryWriter;
+
+public class SharedMemorySessionHandle implements SessionHandle{
+
+	protected static final long STALL_TIMEOUT = TimeUnit.SECONDS.toNanos(5);
+
+	protected final SharedMemoryReceiverHandle handle;
+	protected final InetSocketAddress address;
+	protected final Path file;
+	protected final SharedMemoryRing in;
+	protected final SharedMemoryRing out;
+	protected final BinaryWriter writer;
+	protected final ReentrantLock lock = new ReentrantLock();
+	protected final SendQueue queue;
+	protected byte[] received;
+	protected long stalledRead;
+	protected long stalledSince;
+	protected volatile boolean closed;
+
+
+	public SharedMemorySessionHandle(InetSocketAddress address, Path file, SharedMemoryRing in, SharedMemoryRing out, SharedMemoryReceiverHandle handle) {
+
+		this.address = address;
+		this.file = file;
+		this.in = in;
+		this.out = out;
+		this.handle = handle;
+		writer = new BinaryWriter();
+		received = new byte[Math.min(in.getMaxRecordLength(), handle.receiver.getMaxPacketSize())];
+		queue = new SendQueue(this);
+	}
+
+
+	/**
+	 * Reads and dispatches every record currently in the incoming ring.
+	 * @return The number of records read, or -1 if the remote client has closed the connection.
+	 */
+	protected int receive() {
+
+		int count = 0;
+		int length;
+		while((length = in.peek()) >= 0) {
+
+			if(length > received.length)
+				received = new byte[length];
+
+			in.read(received);
+			readPackets(new BinaryReader(received, 0, length));
+			++count;
+		}
+
+		if(count == 0 && in.isClosed())
+			return -1;
+
+		return count;
+	}
+
+
+	protected void readPackets(BinaryReader reader) {
+
+		try {
+			while(reader.hasMoreData()) {
+
+				int id = handle.receiver.readPacketID(reader);
+				Packet packet = handle.receiver.readPacket(id, reader);
+				handle.receiver.onReceive(this, packet);
+			}
+		} catch (Throwable t) {
+
+			System.err.println("Error reading packet from client " + address + ": ");
+			t.printStackTrace();
+		}
+	}
+
+
+	/**
+	 * Writes as many queued batches to the outgoing ring as it has room for. This is called by the
+	 * polling Thread, and by Threads waiting for this connection to become writable. It never waits, and
+	 * writes nothing if another Thread is sending. A process
+	 * that crashes never closes its rings, so if the remote client consumes nothing for
+	 * {@link #STALL_TIMEOUT} while batches are waiting, it is presumed dead.
+	 * @return The number of batches written, or -1 if the remote client stopped reading.
+	 */
+	protected int flush() {
+
+		if(!lock.tryLock())
+			return 0;
+
+		try {
+			int count = 0;
+			PooledBuffer data;
+			while((data = queue.peek()) != null) {
+
+				if(!out.write(data.getData(), 0, data.getLength())) {
+
+					long read = out.getReadPosition();
+					long time = System.nanoTime();
+					if(count > 0 || stalledSince == 0 || read != stalledRead) {
+
+						stalledRead = read;
+						stalledSince = time;
+					}
+					else if(time - stalledSince > STALL_TIMEOUT)
+						return -1;
+
+					return count;
+				}
+
+				queue.remove();
+				++count;
+			}
+
+			stalledSince = 0;
+			return count;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public PacketReceiver<?> getReceiver() {
+
+		return handle.receiver;
+	}
+
+
+	@Override
+	public InetSocketAddress getAddress() {
+
+		return address;
+	}
+
+
+	/**
+	 * Whether this connection is writable. Batches are written straight to the outgoing ring while it
+	 * has room, and are only queued once it is full, so this follows the occupancy of the ring, plus
+	 * whatever has been queued behind it.
+	 * @return True if this connection is writable.
+	 */
+	@Override
+	public boolean isWritable() {
+
+		return queue.isWritable();
+	}
+
+
+	@Override
+	public int getBufferedBytes() {
+
+		return writer.getPosition();
+	}
+
+
+	@Override
+	public void forceReliability(boolean reliable) throws IOException {}
+
+
+	@Override
+	public void sendPacket(Packet packet) throws IOException {
+
+		lock.lock();
+		try {
+			int startIndex = writer.getPosition();
+			handle.receiver.writePacketID(packet, writer);
+			handle.receiver.writePacket(packet, writer);
+
+			if(startIndex > 0 && writer.getPosition() > received.length) {
+
+				writer.setPosition(startIndex);
+				launch();
+				handle.receiver.writePacketID(packet, writer);
+				handle.receiver.writePacket(packet, writer);
+			}
+
+			if(writer.getPosition() > out.getMaxRecordLength()) {
+
+				writer.setPosition(startIndex);
+				throw new RuntimeException("Packet overflow exception: Packet " + packet.getClass() + " is larger than the shared memory ring allows.");
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public void sendPacket(EncodedPacket packet) throws IOException {
+
+		lock.lock();
+		try {
+			if(packet.getLength() > out.getMaxRecordLength())
+				throw new RuntimeException("Packet overflow exception: Packet " + packet.getPacket().getClass() + " is larger than the shared memory ring allows.");
+
+			if(writer.hasData() && writer.getPosition() + packet.getLength() > received.length)
+				launch();
+
+			packet.writeTo(writer);
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Writes the current batch to the outgoing ring. If the ring is full, the batch is queued, and written
+	 * by the polling Thread once the remote client has made room. Unless called by the polling Thread, this
+	 * first waits for the connection to become writable under {@link OverflowPolicy#BLOCK}.
+	 */
+	@Override
+	public void launchPacket() throws IOException {
+
+		if(!handle.isPolling())
+			awaitWritable();
+
+		lock.lock();
+		try {
+			launch();
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	/**
+	 * Waits for this connection to become writable, if it uses {@link OverflowPolicy#BLOCK}. The waiting Thread
+	 * writes the queued batches itself rather than waiting for the polling Thread, which may be held up by a
+	 * PacketHandler sending to this same Session.
+	 * @throws IOException If the connection is closed, the remote client stopped reading, or the calling
+	 * Thread is interrupted while waiting.
+	 */
+	protected void awaitWritable() throws IOException {
+
+		if(queue.isWritable() || handle.receiver.getOverflowPolicy() != OverflowPolicy.BLOCK)
+			return;
+
+		IdleStrategy idle = new IdleStrategy();
+		while(!queue.isWritable()) {
+
+			if(closed)
+				throw new IOException("Connection to " + address + " is closed");
+
+			if(Thread.interrupted()) {
+
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("Interrupted waiting for the send queue of " + address);
+			}
+
+			int sent = flush();
+			if(sent < 0) {
+
+				disconnected();
+				throw new IOException("Connection to " + address + " stopped reading");
+			}
+
+			if(sent > 0)
+				idle.reset();
+			else
+				idle.idle();
+		}
+	}
+
+
+	/**
+	 * Closes this connection and notifies the {@link PacketReceiver}, unless it has already been closed.
+	 */
+	protected void disconnected() {
+
+		if(!closed) {
+
+			handle.closeSession(this);
+			handle.receiver.onDisconnect(this);
+		}
+	}
+
+
+	private void launch() throws IOException {
+
+		if(!writer.hasData())
+			return;
+
+		int length = writer.getPosition();
+		if(queue.isEmpty() && out.write(writer.getRawData(), 0, length)) {
+
+			writer.setPosition(0);
+			return;
+		}
+
+		PooledBuffer data = handle.receiver.getBufferPool().acquire(length);
+		System.arraycopy(writer.getRawData(), 0, data.getData(), 0, length);
+		writer.setPosition(0);
+		try {
+			queue.offer(data, true);
+		} catch (IOException e) {
+
+			disconnected();
+			throw e;
+		}
+	}
+
+
+	@Override
+	public void close() {
+
+		if(closed)
+			return;
+
+		closed = true;
+		queue.close();
+		out.close();
+		try {
+			Files.deleteIfExists(file);
+		} catch (IOException e) {}
+	}
+}
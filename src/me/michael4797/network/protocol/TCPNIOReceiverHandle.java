@@ -0,0 +1,301 @@
+package me.michael4797.network.protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import me.michael4797.network.PacketReceiver;
+import me.michael4797.network.packet.Packet;
+
+public class TCPNIOReceiverHandle implements ReceiverHandle{
+
+	protected final ServerSocketChannel socket;
+	protected final PacketReceiver<?> receiver;
+	protected final SelectorPool selectors;
+	protected final HashMap<InetSocketAddress, TCPNIOSessionHandle> sessions = new HashMap<>();
+	protected final HashMap<InetSocketAddress, CompletableFuture<SessionHandle>> connecting = new HashMap<>();
+	protected final HashMap<InetSocketAddress, SocketChannel> connectors = new HashMap<>();
+	protected boolean closed;
+
+
+	public TCPNIOReceiverHandle(int port, PacketReceiver<?> receiver) {
+
+		try {
+
+			socket = ServerSocketChannel.open();
+			socket.bind(new InetSocketAddress(port));
+		} catch (IOException e) {
+
+			throw new RuntimeException("Error initializing TCP socket", e);
+		}
+
+		this.receiver = receiver;
+		selectors = new SelectorPool("TCP-NIO-Selector-" + getPort());
+	}
+
+
+	@Override
+	public int getPort() {
+
+		return socket.socket().getLocalPort();
+	}
+
+
+	/**
+	 * Opens a connection and waits for it to complete. Connections are normally completed by the event loops,
+	 * which also run PacketHandlers, so an event loop that waited for its own connection would never complete it.
+	 * When called from an event loop, the connection is instead made in blocking mode before it is registered.
+	 * Event loops should prefer {@link #openSessionAsync(InetSocketAddress)}, so they are not held up by the connection.
+	 * @throws IllegalStateException If called from an event loop while the same connection is already being opened.
+	 */
+	@Override
+	public SessionHandle openSession(InetSocketAddress to) {
+
+		CompletableFuture<SessionHandle> future = SelectorPool.isEventLoop() ? connect(to, true) : openSessionAsync(to);
+		if(!future.isDone() && SelectorPool.isEventLoop())
+			throw new IllegalStateException("Connection to " + to + " is already being opened, use openConnectionAsync from an event loop");
+
+		try {
+			return future.join();
+		} catch (CompletionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+
+	@Override
+	public CompletableFuture<SessionHandle> openSessionAsync(InetSocketAddress to) {
+
+		return connect(to, false);
+	}
+
+
+	protected CompletableFuture<SessionHandle> connect(InetSocketAddress to, boolean blocking) {
+
+		CompletableFuture<SessionHandle> future;
+		synchronized(this) {
+
+			TCPNIOSessionHandle handle = sessions.get(to);
+			if(handle != null)
+				return CompletableFuture.completedFuture(handle);
+
+			future = connecting.get(to);
+			if(future != null)
+				return future;
+
+			if(closed)
+				return CompletableFuture.failedFuture(new IOException("ReceiverHandle is closed"));
+
+			future = new CompletableFuture<>();
+			connecting.put(to, future);
+		}
+
+		try {
+
+			SocketChannel channel = SocketChannel.open();
+			synchronized(this) {
+
+				if(closed) {
+
+					channel.close();
+					throw new IOException("ReceiverHandle is closed");
+				}
+
+				connectors.put(to, channel);
+			}
+
+			channel.configureBlocking(blocking);
+			if(channel.connect(to))
+				connected(to, channel, null);
+			else
+				selectors.register(channel, SelectionKey.OP_CONNECT, new Connector(to, channel));
+		} catch (IOException | RuntimeException e) {
+
+			failed(to, e);
+		}
+
+		return future;
+	}
+
+
+	protected void connected(InetSocketAddress to, SocketChannel channel, SelectionKey key) {
+
+		TCPNIOSessionHandle handle = new TCPNIOSessionHandle(channel, this);
+		CompletableFuture<SessionHandle> future;
+		synchronized(this) {
+
+			connectors.remove(to);
+			future = connecting.remove(to);
+			if(future == null || closed) {
+
+				handle.close();
+				return;
+			}
+
+			sessions.put(to, handle);
+			if(key == null)
+				selectors.register(channel, SelectionKey.OP_READ, handle);
+			else {
+
+				key.attach(handle);
+				key.interestOps(SelectionKey.OP_READ);
+				handle.onRegister(key);
+			}
+		}
+
+		future.complete(handle);
+	}
+
+
+	protected void failed(InetSocketAddress to, Throwable cause) {
+
+		CompletableFuture<SessionHandle> future;
+		SocketChannel channel;
+		synchronized(this) {
+
+			future = connecting.remove(to);
+			channel = connectors.remove(to);
+		}
+
+		if(channel != null) {
+
+			try {
+				channel.close();
+			} catch (IOException e) {}
+		}
+
+		if(future != null)
+			future.completeExceptionally(cause);
+	}
+
+
+	@Override
+	public void closeSession(SessionHandle handle) {
+
+		synchronized(this) {
+
+			handle.close();
+			sessions.remove(handle.getAddress());
+		}
+	}
+
+
+	@Override
+	public SessionHandle getSession(InetSocketAddress to) {
+
+		return sessions.get(to);
+	}
+
+
+	protected void receivePacket(SessionHandle handle, Packet packet) {
+
+		receiver.onReceive(handle, packet);
+	}
+
+
+	@Override
+	public void receive() {
+
+		while(socket.isOpen()) {
+
+			try {
+
+				SocketChannel client = socket.accept();
+
+				synchronized(this) {
+
+					TCPNIOSessionHandle handle = new TCPNIOSessionHandle(client, this);
+					SessionHandle old = sessions.put(handle.getAddress(), handle);
+					if(old != null) {
+
+						old.close();
+						receiver.onDisconnect(old);
+					}
+
+					receiver.onConnect(handle);
+					selectors.register(client, SelectionKey.OP_READ, handle);
+				}
+			} catch (IOException e) {
+
+				if(socket.isOpen())
+					e.printStackTrace();
+			}
+		}
+
+		close();
+	}
+
+
+	@Override
+	public synchronized void close() {
+
+		if(closed)
+			return;
+
+		closed = true;
+
+		try {
+			socket.close();
+		} catch (IOException e) {}
+
+		for(TCPNIOSessionHandle handle: sessions.values())
+			handle.close();
+
+		sessions.clear();
+		for(CompletableFuture<SessionHandle> future: new ArrayList<>(connecting.values()))
+			future.completeExceptionally(new IOException("ReceiverHandle is closed"));
+
+		connecting.clear();
+		for(SocketChannel channel: connectors.values()) {
+
+			try {
+				channel.close();
+			} catch (IOException e) {}
+		}
+
+		connectors.clear();
+		selectors.close();
+	}
+
+
+	protected class Connector implements SelectorPool.SelectorHandler{
+
+		protected final InetSocketAddress to;
+		protected final SocketChannel channel;
+
+
+		protected Connector(InetSocketAddress to, SocketChannel channel) {
+
+			this.to = to;
+			this.channel = channel;
+		}
+
+
+		@Override
+		public void onRegister(SelectionKey key) {}
+
+
+		@Override
+		public void onSelect(SelectionKey key) {
+
+			if(!key.isConnectable())
+				return;
+
+			try {
+
+				if(channel.finishConnect())
+					connected(to, channel, key);
+			} catch (IOException | RuntimeException e) {
+
+				key.cancel();
+				failed(to, e);
+			}
+		}
+	}
+}
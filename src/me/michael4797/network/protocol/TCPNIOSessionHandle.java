@@ -0,0 +1,325 @@
+package me.michael4797.network.protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import me.michael4797.network.PacketReceiver;
+import me.michael4797.network.packet.Packet;
+import me.michael4797.util.BinaryReader;
+import me.michael4797.util.BinaryWriter;
+
+public class TCPNIOSessionHandle implements SessionHandle, SelectorPool.SelectorHandler{
+
+	protected final SocketChannel channel;
+	protected final TCPNIOReceiverHandle handle;
+	protected final InetSocketAddress address;
+	protected final BinaryWriter writer;
+	protected final SendQueue outbound;
+	protected final ByteBuffer header = ByteBuffer.allocate(4);
+	protected ByteBuffer writing;
+	protected ByteBuffer body;
+	protected PooledBuffer bodyData;
+	protected SelectionKey key;
+	protected boolean reliable;
+	protected boolean reliableBatch;
+	protected volatile boolean closed;
+
+
+	public TCPNIOSessionHandle(SocketChannel channel, TCPNIOReceiverHandle handle) {
+
+		this.channel = channel;
+		this.handle = handle;
+		writer = new BinaryWriter();
+		try {
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			channel.configureBlocking(false);
+			address = (InetSocketAddress) channel.getRemoteAddress();
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+
+		outbound = new SendQueue(this);
+	}
+
+
+	@Override
+	public void onRegister(SelectionKey key) {
+
+		synchronized(this) {
+
+			this.key = key;
+			if(closed) {
+
+				key.cancel();
+				return;
+			}
+
+			if(!outbound.isEmpty())
+				key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+		}
+	}
+
+
+	@Override
+	public void onSelect(SelectionKey key) {
+
+		try {
+			if(key.isWritable())
+				flush();
+
+			if(key.isReadable())
+				read();
+		} catch (IOException e) {
+
+			disconnected();
+		}
+	}
+
+
+	protected void read() throws IOException {
+
+		while(true) {
+
+			if(body == null) {
+
+				if(channel.read(header) < 0) {
+
+					disconnected();
+					return;
+				}
+
+				if(header.hasRemaining())
+					return;
+
+				header.flip();
+				int length = header.getInt();
+				header.clear();
+				if(length < 0 || length > handle.receiver.getMaxPacketSize())
+					throw new IOException("Invalid frame length " + length);
+
+				bodyData = handle.receiver.getBufferPool().acquire(length);
+				body = ByteBuffer.wrap(bodyData.getData(), 0, length);
+			}
+
+			if(body.hasRemaining() && channel.read(body) < 0) {
+
+				disconnected();
+				return;
+			}
+
+			if(body.hasRemaining())
+				return;
+
+			try {
+				readPackets(new BinaryReader(bodyData.getData(), 0, bodyData.getLength()));
+			} finally {
+
+				bodyData.release();
+				bodyData = null;
+				body = null;
+			}
+		}
+	}
+
+
+	protected void readPackets(BinaryReader reader) {
+
+		try {
+			while(reader.hasMoreData()) {
+
+				int id = handle.receiver.readPacketID(reader);
+				Packet packet = handle.receiver.readPacket(id, reader);
+				handle.receivePacket(this, packet);
+			}
+		} catch (Throwable t) {
+
+			System.err.println("Error reading packet from client " + address + ": ");
+			t.printStackTrace();
+		}
+	}
+
+
+	protected void disconnected() {
+
+		if(!closed) {
+
+			handle.closeSession(this);
+			handle.receiver.onDisconnect(this);
+		}
+	}
+
+
+	protected synchronized void flush() throws IOException {
+
+		PooledBuffer frame;
+		while((frame = outbound.peek()) != null) {
+
+			if(writing == null)
+				writing = ByteBuffer.wrap(frame.getData(), 0, frame.getLength());
+
+			channel.write(writing);
+			if(writing.hasRemaining())
+				break;
+
+			writing = null;
+			outbound.remove();
+		}
+
+		if(key != null && key.isValid())
+			key.interestOps(outbound.isEmpty() ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+	}
+
+
+	@Override
+	public PacketReceiver<?> getReceiver() {
+
+		return handle.receiver;
+	}
+
+
+	@Override
+	public InetSocketAddress getAddress() {
+
+		return address;
+	}
+
+
+	@Override
+	public synchronized void close() {
+
+		if(closed)
+			return;
+
+		closed = true;
+		writing = null;
+		outbound.close();
+		if(key != null)
+			key.cancel();
+
+		try {
+			channel.close();
+		}catch(IOException e) {}
+	}
+
+
+	@Override
+	public boolean isWritable() {
+
+		return outbound.isWritable();
+	}
+
+
+	@Override
+	public int getBufferedBytes() {
+
+		return writer.getPosition();
+	}
+
+
+	@Override
+	public void forceReliability(boolean reliable) throws IOException {
+
+		this.reliable = reliable;
+	}
+
+
+	@Override
+	public void sendPacket(Packet packet) throws IOException {
+
+		try {
+			synchronized(this) {
+
+				int startIndex = writer.getPosition();
+				handle.receiver.writePacketID(packet, writer);
+				handle.receiver.writePacket(packet, writer);
+
+				if(startIndex > 0 && writer.getPosition() > handle.receiver.getMaxPacketSize()) {
+
+					writer.setPosition(startIndex);
+					launch();
+					handle.receiver.writePacketID(packet, writer);
+					handle.receiver.writePacket(packet, writer);
+				}
+
+				if(writer.getPosition() > handle.receiver.getMaxPacketSize()) {
+
+					writer.setPosition(0);
+					throw new RuntimeException("Packet overflow exception: Packet " + packet.getClass() + " is larger than the specified max packet size.");
+				}
+
+				reliableBatch |= reliable;
+			}
+		} catch (IOException e) {
+
+			disconnected();
+			throw e;
+		}
+	}
+
+
+	@Override
+	public void sendPacket(EncodedPacket packet) throws IOException {
+
+		try {
+			synchronized(this) {
+
+				if(packet.getLength() > handle.receiver.getMaxPacketSize())
+					throw new RuntimeException("Packet overflow exception: Packet " + packet.getPacket().getClass() + " is larger than the specified max packet size.");
+
+				if(writer.hasData() && writer.getPosition() + packet.getLength() > handle.receiver.getMaxPacketSize())
+					launch();
+
+				packet.writeTo(writer);
+				reliableBatch |= reliable;
+			}
+		} catch (IOException e) {
+
+			disconnected();
+			throw e;
+		}
+	}
+
+
+	@Override
+	public void launchPacket() throws IOException {
+
+		if(!SelectorPool.isEventLoop())
+			outbound.awaitWritable();
+
+		try {
+			launch();
+		} catch (IOException e) {
+
+			disconnected();
+			throw e;
+		}
+	}
+
+
+	protected void launch() throws IOException {
+
+		synchronized(this) {
+
+			if(!writer.hasData())
+				return;
+
+			int length = writer.getPosition();
+			PooledBuffer frame = handle.receiver.getBufferPool().acquire(4 + length);
+			byte[] data = frame.getData();
+			data[0] = (byte) (length >>> 24);
+			data[1] = (byte) (length >>> 16);
+			data[2] = (byte) (length >>> 8);
+			data[3] = (byte) length;
+			System.arraycopy(writer.getRawData(), 0, data, 4, length);
+			writer.setPosition(0);
+			boolean batch = reliableBatch;
+			reliableBatch = false;
+			if(outbound.offer(frame, batch) && writing == null)
+				flush();
+		}
+	}
+}
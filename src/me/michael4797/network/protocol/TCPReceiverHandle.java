@@ -15,11 +15,17 @@ public class TCPReceiverHandle implements ReceiverHandle{
 	protected final PacketReceiver<?> receiver;
 	protected final WorkerPool workers;
 	protected final HashMap<InetSocketAddress, TCPSessionHandle> sessions = new HashMap<>();
-	protected boolean closed;
+	protected volatile boolean closed;
 	
 	
 	public TCPReceiverHandle(int port, PacketReceiver<?> receiver) {
 		
+		this(port, receiver, new WorkerPool(VirtualThreads.platformFactory()));
+	}
+	
+	
+	public TCPReceiverHandle(int port, PacketReceiver<?> receiver, WorkerPool workers) {
+		
 		try {
 			
 			socket = new ServerSocket(port);
@@ -29,7 +35,7 @@ public class TCPReceiverHandle implements ReceiverHandle{
 		}
 		
 		this.receiver = receiver;
-		workers = new WorkerPool();
+		this.workers = workers;
 	}
 
 	
@@ -46,14 +52,23 @@ public class TCPReceiverHandle implements ReceiverHandle{
 		synchronized(this) {
 			
 			TCPSessionHandle handle = sessions.get(to);
-			if(handle == null) {
+			if(handle != null)
+				return handle;
+		}
+		
+		TCPSessionHandle handle = new TCPSessionHandle(to, this);
+		synchronized(this) {
+			
+			TCPSessionHandle existing = sessions.get(to);
+			if(existing != null) {
 				
-				handle = new TCPSessionHandle(to, this);
-				sessions.put(to, handle);
-				workers.open(to);
-				workers.execute(to, handle::receive);
+				handle.close();
+				return existing;
 			}
 			
+			sessions.put(to, handle);
+			workers.open(to);
+			workers.execute(to, handle::receive);
 			return handle;
 		}
 	}
@@ -136,6 +151,9 @@ public class TCPReceiverHandle implements ReceiverHandle{
 		
 		synchronized(this) {
 		
+			for(TCPSessionHandle handle: sessions.values())
+				handle.close();
+			
 			workers.close();
 			sessions.clear();
 		}		
@@ -5,6 +5,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.util.concurrent.locks.ReentrantLock;
 
 import me.michael4797.network.PacketReceiver;
 import me.michael4797.network.packet.Packet;
@@ -18,7 +19,12 @@ public class TCPSessionHandle implements SessionHandle{
 	protected final InputStream in;
 	protected final OutputStream out;
 	protected final BinaryWriter writer;
-	protected boolean closed;
+	protected final ReentrantLock lock = new ReentrantLock();
+	protected final SendQueue queue;
+	protected Thread sender;
+	protected boolean reliable;
+	protected boolean reliableBatch;
+	protected volatile boolean closed;
 	
 	
 	public TCPSessionHandle(Socket socket, TCPReceiverHandle handle) {
@@ -33,6 +39,8 @@ public class TCPSessionHandle implements SessionHandle{
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
+		
+		queue = new SendQueue(this);
 	}
 	
 	
@@ -49,6 +57,7 @@ public class TCPSessionHandle implements SessionHandle{
 		
 		this.handle = handle;
 		writer = new BinaryWriter();
+		queue = new SendQueue(this);
 	}
 	
 	
@@ -76,9 +85,31 @@ public class TCPSessionHandle implements SessionHandle{
 			}
 		}
 		
+		disconnected();
+	}
+	
+	
+	protected void send() {
+		
+		try {
+			PooledBuffer data;
+			while((data = queue.take()) != null) {
+				
+				out.write(data.getData(), 0, data.getLength());
+				out.flush();
+				queue.remove();
+			}
+		} catch (IOException e) {
+			
+			disconnected();
+		} catch (InterruptedException e) {}
+	}
+	
+	
+	protected void disconnected() {
+		
 		if(!closed) {
 
-			closed = true;
 			handle.closeSession(this);
 			handle.receiver.onDisconnect(this);
 		}
@@ -106,6 +137,7 @@ public class TCPSessionHandle implements SessionHandle{
 			return;
 		
 		closed = true;
+		queue.close();
 		try {
 			socket.close();
 		}catch(IOException e) {}
@@ -113,16 +145,49 @@ public class TCPSessionHandle implements SessionHandle{
 
 
 	@Override
-	public void forceReliability(boolean reliable) throws IOException {}
+	public boolean isWritable() {
+		
+		return queue.isWritable();
+	}
+
+
+	@Override
+	public int getBufferedBytes() {
+
+		return writer.getPosition();
+	}
+
+
+	@Override
+	public void forceReliability(boolean reliable) throws IOException {
+		
+		this.reliable = reliable;
+	}
 
 
 	@Override
 	public void sendPacket(Packet packet) throws IOException {
 
-		synchronized(this) {
-			
+		lock.lock();
+		try {
 			handle.receiver.writePacketID(packet, writer);
 			handle.receiver.writePacket(packet, writer);
+			reliableBatch |= reliable;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public void sendPacket(EncodedPacket packet) throws IOException {
+
+		lock.lock();
+		try {
+			packet.writeTo(writer);
+			reliableBatch |= reliable;
+		} finally {
+			lock.unlock();
 		}
 	}
 
@@ -130,11 +195,30 @@ public class TCPSessionHandle implements SessionHandle{
 	@Override
 	public void launchPacket() throws IOException {
 		
-		synchronized(this) {
+		queue.awaitWritable();
+		try {
+			lock.lock();
+			try {
+				if(!writer.hasData())
+					return;
+				
+				int length = writer.getPosition();
+				PooledBuffer data = handle.receiver.getBufferPool().acquire(length);
+				System.arraycopy(writer.getRawData(), 0, data.getData(), 0, length);
+				writer.setPosition(0);
+				boolean batch = reliableBatch;
+				reliableBatch = false;
+				if(sender == null)
+					sender = VirtualThreads.start(this::send, "TCP-Send-" + getAddress());
+				
+				queue.offer(data, batch);
+			} finally {
+				lock.unlock();
+			}
+		} catch (IOException e) {
 			
-			out.write(writer.getRawData(), 0, writer.getPosition());
-			out.flush();
-			writer.setPosition(0);
+			disconnected();
+			throw e;
 		}
 	}		
 }
@@ -1,13 +1,18 @@
 package me.michael4797.network.protocol;
 
-import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
 
 import me.michael4797.network.PacketReceiver;
 import me.michael4797.network.packet.Packet;
 
 public class TCPSyncReceiverHandle extends TCPReceiverHandle implements Runnable{
 	
-	protected final ArrayDeque<ReceivedPacket> packets = new ArrayDeque<>();
+	protected final MpscQueue<ReceivedPacket> packets = new MpscQueue<>();
+	protected final AtomicBoolean parked = new AtomicBoolean();
+	protected final Consumer<ReceivedPacket> dispatch = (received) -> receiver.onReceive(received.handle, received.packet);
+	protected volatile Thread dispatcher;
 	
 	
 	public TCPSyncReceiverHandle(int port, PacketReceiver<?> receiver) {
@@ -19,35 +24,30 @@ public class TCPSyncReceiverHandle extends TCPReceiverHandle implements Runnable
 	@Override
 	protected void receivePacket(SessionHandle handle, Packet packet) {
 		
-		packets.add(new ReceivedPacket(handle, packet));
-		synchronized(packets) {
-			packets.notifyAll();
-		}
+		packets.offer(new ReceivedPacket(handle, packet));
+		if(parked.get() && parked.compareAndSet(true, false))
+			LockSupport.unpark(dispatcher);
 	}
 
 	
 	@Override
 	public void receive() {
 		
+		dispatcher = Thread.currentThread();
 		Thread thread = new Thread(this, "TCP-Sync-Accept");
 		thread.setDaemon(true);
 		thread.start();
 		
 		while(!closed) {
 			
-			while(packets.isEmpty()) {
-				synchronized(packets) {
-					try {
-						packets.wait();
-					} catch (InterruptedException e) {}
-				}
-			}
-			
-			ReceivedPacket received = packets.poll();
-			if(received == null)
+			if(packets.drain(dispatch) > 0)
 				continue;
 			
-			receiver.onReceive(received.handle, received.packet);
+			parked.set(true);
+			if(packets.isEmpty() && !closed)
+				LockSupport.park(this);
+			
+			parked.set(false);
 		}
 	}
 
@@ -63,8 +63,8 @@ public class TCPSyncReceiverHandle extends TCPReceiverHandle implements Runnable
 		
 		super.close();
 		
-		synchronized(packets) {
-			packets.notifyAll();
-		}
+		Thread dispatcher = this.dispatcher;
+		if(dispatcher != null)
+			LockSupport.unpark(dispatcher);
 	}
 }
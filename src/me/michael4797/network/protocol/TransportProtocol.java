@@ -1,5 +1,8 @@
 package me.michael4797.network.protocol;
 
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+
 import me.michael4797.network.PacketReceiver;
 
 /**
@@ -23,9 +26,9 @@ public interface TransportProtocol {
 	
 	/**
 	 * A UDP-based connection where {@link me.michael4797.network.PacketHandler PacketHandler}
-	 * methods are called asynchronously. Each {@link me.michael4797.network.Session Session}
-	 * will have its own worker thread responsible for invoking {@link me.michael4797.network.PacketHandler PacketHandlers}
-	 * for Packets received from that client.
+	 * methods are called asynchronously. {@link me.michael4797.network.PacketHandler PacketHandlers}
+	 * for Packets received from a {@link me.michael4797.network.Session Session} are invoked in order,
+	 * on one of a fixed number of worker threads shared by all Sessions.
 	 */
 	public static final TransportProtocol UDP_ASYNC = (p, r) -> new UDPAsyncReceiverHandle(p, r);
 	
@@ -35,6 +38,137 @@ public interface TransportProtocol {
 	 */
 	public static final TransportProtocol TCP_SYNC = (p, r) -> new TCPSyncReceiverHandle(p, r);
 	
+	/**
+	 * A non-blocking TCP-based connection where {@link me.michael4797.network.PacketHandler PacketHandler}
+	 * methods are called asynchronously. Rather than dedicating a thread to each {@link me.michael4797.network.Session Session},
+	 * every connection is assigned to one of a small number of {@link java.nio.channels.Selector Selector} threads,
+	 * which invokes the {@link me.michael4797.network.PacketHandler PacketHandlers} for Packets received from that
+	 * client. PacketHandlers should therefore avoid blocking, as doing so stalls every connection sharing the thread.
+	 * Both ends of a connection must use this protocol, as Packet data is sent in length prefixed frames.
+	 */
+	public static final TransportProtocol TCP_NIO = (p, r) -> new TCPNIOReceiverHandle(p, r);
+	
+	/**
+	 * A UDP-based connection where all {@link me.michael4797.network.PacketHandler PacketHandler}
+	 * methods are called synchronously from the Thread that invokes {@link ReceiverHandle#receive()}.
+	 * Unlike {@link #UDP_SYNC}, datagrams are sent and received through a non-blocking
+	 * {@link java.nio.channels.DatagramChannel DatagramChannel} using pooled direct buffers,
+	 * so no objects are allocated per unreliable datagram. Every datagram already queued on the socket, up to
+	 * {@link PacketReceiver#getReceiveBatchSize()}, is read before any of them are parsed and dispatched.
+	 * This protocol is wire compatible with {@link #UDP_SYNC}.
+	 */
+	public static final TransportProtocol UDP_CHANNEL = (p, r) -> new UDPChannelReceiverHandle(p, r);
+	
+	/**
+	 * A UDP-based connection where incoming datagrams are read by one Thread per available processor.
+	 * Each Thread owns its own socket bound to the same port with SO_REUSEPORT, and all
+	 * {@link me.michael4797.network.PacketHandler PacketHandler} methods for a client are called
+	 * synchronously from the Thread that reads that client's datagrams. If SO_REUSEPORT is not supported,
+	 * a single Thread is used. This protocol is wire compatible with {@link #UDP_SYNC}.
+	 * @see #udpSharded(int)
+	 */
+	public static final TransportProtocol UDP_SHARDED = (p, r) -> new UDPShardedReceiverHandle(p, r);
+	
+	
+	/**
+	 * Identical to {@link #TCP_ASYNC}, except each {@link me.michael4797.network.Session Session}'s
+	 * worker thread is a virtual thread. {@link me.michael4797.network.PacketHandler PacketHandlers} may
+	 * block as they would with {@link #TCP_ASYNC}, without tying up a platform thread per client.
+	 * If the running JVM does not support virtual threads, this behaves identically to {@link #TCP_ASYNC}.
+	 * @see PacketReceiver#setVirtualHeartBeats(boolean)
+	 */
+	public static final TransportProtocol TCP_VIRTUAL = (p, r) -> new TCPReceiverHandle(p, r, new WorkerPool(VirtualThreads.factory()));
+	
+	/**
+	 * Similar to {@link #UDP_ASYNC}, except each {@link me.michael4797.network.Session Session}
+	 * has its own worker thread, which is a virtual thread. {@link me.michael4797.network.PacketHandler PacketHandlers} may
+	 * block as they would with {@link #UDP_ASYNC}, without tying up a platform thread per client.
+	 * If the running JVM does not support virtual threads, this behaves identically to {@link #UDP_ASYNC}.
+	 * @see PacketReceiver#setVirtualHeartBeats(boolean)
+	 */
+	public static final TransportProtocol UDP_VIRTUAL = (p, r) -> new UDPAsyncReceiverHandle(p, r, new WorkerPool(VirtualThreads.factory()));
+
+	/**
+	 * A connection between processes on the same machine, where all {@link me.michael4797.network.PacketHandler PacketHandler}
+	 * methods are called synchronously from the Thread that invokes {@link ReceiverHandle#receive()}.
+	 * Packets are exchanged through memory mapped ring buffers instead of the network stack, and
+	 * only the port of a remote address is used to identify the remote PacketReceiver, which
+	 * must also use this protocol. The receiving Thread busy spins briefly while waiting for data,
+	 * trading CPU time for latency.
+	 */
+	public static final TransportProtocol SHARED_MEMORY = (p, r) -> new SharedMemoryReceiverHandle(p, r);
+
+	/**
+	 * A connection between PacketReceivers in the same JVM, where all {@link me.michael4797.network.PacketHandler PacketHandler}
+	 * methods are called synchronously from the Thread that invokes {@link ReceiverHandle#receive()}.
+	 * Ports are allocated from a registry within the JVM, and only the port of a remote address is
+	 * used to identify the remote PacketReceiver. Sent Packet objects are handed directly to the
+	 * remote PacketReceiver without being serialized, so they should not be modified once sent.
+	 * @see #local(boolean)
+	 */
+	public static final TransportProtocol LOCAL = (p, r) -> new LocalReceiverHandle(p, r, false);
+
+	/**
+	 * A connection between processes on the same machine over Unix domain sockets, where
+	 * {@link me.michael4797.network.PacketHandler PacketHandler} methods are called asynchronously, as with {@link #TCP_ASYNC}.
+	 * A PacketReceiver created with a path binds its socket to that path. Otherwise the port identifies a
+	 * socket file in the temporary directory. Remote paths are given to
+	 * {@link PacketReceiver#openConnection(java.net.InetSocketAddress) openConnection} as
+	 * {@link UnixDomainReceiverHandle#address(java.nio.file.Path) UnixDomainReceiverHandle.address(path)}.
+	 * Requires Java 16 or later.
+	 */
+	public static final TransportProtocol UNIX_DOMAIN = (p, r) -> new UnixDomainReceiverHandle(p, r);
+
+	/**
+	 * Creates a protocol identical to {@link #UDP_SHARDED}, but that reads incoming datagrams using
+	 * the specified number of Threads.
+	 * @param shards The number of receiving Threads, and sockets, to use.
+	 * @return The sharded UDP protocol.
+	 */
+	public static TransportProtocol udpSharded(int shards) {
+		
+		return (p, r) -> new UDPShardedReceiverHandle(p, r, shards);
+	}
+	
+	/**
+	 * Creates a UDP-based protocol that publishes to and receives from the specified multicast group, where all
+	 * {@link me.michael4797.network.PacketHandler PacketHandler} methods are called synchronously from the Thread
+	 * that invokes {@link ReceiverHandle#receive()}. A PacketReceiver bound to a specific port joins the group and
+	 * receives every datagram published to the group on that port, while one bound to a wildcard port only publishes.
+	 * A connection opened to the group's address sends each batch once to every member, and is always unreliable.
+	 * Multicast loopback is enabled, so members on the same machine receive each other's datagrams.
+	 * This protocol is otherwise wire compatible with {@link #UDP_SYNC}.
+	 * @param group The multicast group address.
+	 * @return The multicast protocol.
+	 */
+	public static TransportProtocol multicast(InetAddress group) {
+		
+		return multicast(group, null);
+	}
+	
+	/**
+	 * Creates a protocol identical to {@link #multicast(InetAddress)}, that sends and joins the group
+	 * on the specified network interface.
+	 * @param group The multicast group address.
+	 * @param networkInterface The network interface to use, or null to let the operating system choose.
+	 * @return The multicast protocol.
+	 */
+	public static TransportProtocol multicast(InetAddress group, NetworkInterface networkInterface) {
+		
+		return (p, r) -> new MulticastReceiverHandle(p, r, group, networkInterface);
+	}
+	
+	/**
+	 * Creates a protocol identical to {@link #LOCAL}, that optionally serializes each batch of
+	 * Packets and deserializes it on the remote PacketReceiver, exactly as a network protocol would.
+	 * @param serialize True if Packets should be written and read by the PacketReceivers.
+	 * @return The local protocol.
+	 */
+	public static TransportProtocol local(boolean serialize) {
+		
+		return (p, r) -> new LocalReceiverHandle(p, r, serialize);
+	}
+	
 	
 	/**
 	 * Creates a {@link ReceiverHandle} bound to the specified port, that is responsible for
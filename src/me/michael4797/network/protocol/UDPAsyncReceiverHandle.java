@@ -7,12 +7,28 @@ import me.michael4797.util.BinaryReader;
 public class UDPAsyncReceiverHandle extends UDPReceiverHandle{
 	
 	protected final WorkerPool workers;	
+	protected PooledBuffer received;
 	
 	
 	public UDPAsyncReceiverHandle(int port, PacketReceiver<?> receiver) {
 		
+		this(port, receiver, new WorkerPool());
+	}
+	
+	
+	public UDPAsyncReceiverHandle(int port, PacketReceiver<?> receiver, WorkerPool workers) {
+		
 		super(port, receiver);
-		workers = new WorkerPool();
+		this.workers = workers;
+		nextBuffer();
+	}
+	
+	
+	private void nextBuffer() {
+		
+		int packetSize = Math.min(65507, receiver.getMaxPacketSize());
+		received = receiver.getBufferPool().acquire(packetSize);
+		toReceive.setData(received.getData(), 0, packetSize);
 	}
 
 	
@@ -42,9 +58,18 @@ public class UDPAsyncReceiverHandle extends UDPReceiverHandle{
 	@Override
 	public void readPackets(UDPSessionHandle handle, BinaryReader reader) {
 		
-		workers.execute(handle.getAddress(), () -> super.readPackets(handle, reader));
-		int packetSize = Math.min(65507, receiver.getMaxPacketSize());
-		toReceive.setData(new byte[packetSize], 0, packetSize);
+		PooledBuffer buffer = received;
+		boolean queued = workers.execute(handle.getAddress(), () -> {
+			
+			try {
+				super.readPackets(handle, reader);
+			} finally {
+				buffer.release();
+			}
+		});
+		
+		if(queued)
+			nextBuffer();
 	}
 
 	
@@ -0,0 +1,183 @@
+package me.michael4797.network.protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.PortUnreachableException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+
+import me.michael4797.network.PacketReceiver;
+import me.michael4797.util.BinaryReader;
+
+public class UDPChannelReceiverHandle extends UDPReceiverHandle{
+
+	protected final DatagramChannel channel;
+	protected final Selector selector;
+	protected final DirectBufferPool buffers;
+	protected final byte[][] batch;
+	protected final int[] lengths;
+	protected final InetSocketAddress[] addresses;
+	protected final UDPSessionHandle[] handles;
+
+
+	public UDPChannelReceiverHandle(int port, PacketReceiver<?> receiver) {
+
+		this(open(port), receiver);
+	}
+
+
+	protected UDPChannelReceiverHandle(DatagramChannel channel, PacketReceiver<?> receiver) {
+
+		super(channel.socket(), receiver, null);
+		this.channel = channel;
+
+		try {
+
+			selector = Selector.open();
+			channel.configureBlocking(false);
+			channel.register(selector, SelectionKey.OP_READ);
+		} catch (IOException e) {
+
+			throw new RuntimeException("Error initializing UDP channel", e);
+		}
+
+		int packetSize = Math.min(65507, receiver.getMaxPacketSize());
+		buffers = new DirectBufferPool(packetSize);
+		int batchSize = receiver.getReceiveBatchSize();
+		batch = new byte[batchSize][packetSize];
+		lengths = new int[batchSize];
+		addresses = new InetSocketAddress[batchSize];
+		handles = new UDPSessionHandle[batchSize];
+	}
+
+
+	private static DatagramChannel open(int port) {
+
+		try {
+			return DatagramChannel.open().bind(new InetSocketAddress(port));
+		} catch (IOException e) {
+			throw new RuntimeException("Error initializing UDP socket", e);
+		}
+	}
+
+
+	@Override
+	public void receive() {
+
+		ByteBuffer buffer = buffers.acquire();
+		try {
+			while(channel.isOpen()) {
+
+				try {
+
+					selector.select();
+					selector.selectedKeys().clear();
+
+					int count;
+					while((count = drain(buffer)) > 0)
+						readBatch(count);
+				} catch(PortUnreachableException e){
+
+					throw new RuntimeException("Error establishing connection", e);
+				} catch (IOException e) {
+
+					if(channel.isOpen())
+						throw new RuntimeException("Error reading from socket", e);
+					else
+						return;
+				}
+			}
+		} finally {
+
+			buffers.release(buffer);
+			try {
+				selector.close();
+			} catch (IOException e) {}
+		}
+	}
+
+
+	/**
+	 * Reads every datagram already queued on the channel, up to the batch size, without
+	 * parsing any of them.
+	 * @param buffer The direct buffer used to receive each datagram.
+	 * @return The number of datagrams read into the batch.
+	 * @throws IOException If an error is encountered reading from the channel.
+	 */
+	protected int drain(ByteBuffer buffer) throws IOException {
+
+		int count = 0;
+		while(count < batch.length) {
+
+			buffer.clear();
+			InetSocketAddress address = (InetSocketAddress) channel.receive(buffer);
+			if(address == null)
+				break;
+
+			buffer.flip();
+			lengths[count] = buffer.remaining();
+			buffer.get(batch[count], 0, lengths[count]);
+			addresses[count++] = address;
+		}
+
+		return count;
+	}
+
+
+	/**
+	 * Resolves the sender of every datagram in the batch, then parses and dispatches them in
+	 * the order they were received.
+	 * @param count The number of datagrams in the batch.
+	 */
+	protected void readBatch(int count) {
+
+		for(int i = 0; i < count; ++i) {
+
+			if(i > 0 && addresses[i].equals(addresses[i - 1]))
+				handles[i] = handles[i - 1];
+			else
+				handles[i] = acceptSession(addresses[i]);
+		}
+
+		for(int i = 0; i < count; ++i) {
+
+			readPackets(handles[i], new BinaryReader(batch[i], 0, lengths[i]));
+			handles[i] = null;
+			addresses[i] = null;
+		}
+	}
+
+
+	/**
+	 * Sends a single datagram without blocking. Datagrams are sent by the receive thread and the shared
+	 * {@link SessionTimer} thread too, so if the socket's send buffer is full the datagram is dropped at once,
+	 * and lost like any other, so reliable datagrams are resent later.
+	 */
+	@Override
+	protected void send(byte[] data, int offset, int length, InetSocketAddress to) throws IOException {
+
+		ByteBuffer buffer = buffers.acquire();
+		try {
+
+			buffer.put(data, offset, length);
+			buffer.flip();
+			channel.send(buffer, to);
+		} finally {
+
+			buffers.release(buffer);
+		}
+	}
+
+
+	@Override
+	public void close() {
+
+		try {
+			channel.close();
+		} catch (IOException e) {}
+
+		selector.wakeup();
+	}
+}
@@ -7,6 +7,7 @@ import java.net.InetSocketAddress;
 import java.net.PortUnreachableException;
 import java.net.SocketException;
 import java.util.HashMap;
+import java.util.concurrent.CompletableFuture;
 
 import me.michael4797.network.PacketReceiver;
 import me.michael4797.network.packet.Packet;
@@ -14,6 +15,8 @@ import me.michael4797.util.BinaryReader;
 
 public class UDPReceiverHandle implements ReceiverHandle{
 	
+	private static final ThreadLocal<Boolean> RECEIVING = ThreadLocal.withInitial(() -> Boolean.FALSE);
+	
 	protected final DatagramSocket socket;
 	protected final PacketReceiver<?> receiver;
 	protected final DatagramPacket toReceive;
@@ -22,15 +25,37 @@ public class UDPReceiverHandle implements ReceiverHandle{
 	
 	public UDPReceiverHandle(int port, PacketReceiver<?> receiver) {
 		
+		this(bind(port), receiver);
+	}
+	
+	
+	protected UDPReceiverHandle(DatagramSocket socket, PacketReceiver<?> receiver) {
+		
+		this(socket, receiver, new DatagramPacket(new byte[Math.min(65507, receiver.getMaxPacketSize())], Math.min(65507, receiver.getMaxPacketSize())));
+	}
+	
+	/**
+	 * Creates a UDPReceiverHandle that receives datagrams into the specified DatagramPacket.
+	 * @param socket The socket to receive from.
+	 * @param receiver The PacketReceiver that owns this handle.
+	 * @param toReceive The DatagramPacket used by {@link #receive()}, or null if a subclass receives
+	 * datagrams its own way.
+	 */
+	protected UDPReceiverHandle(DatagramSocket socket, PacketReceiver<?> receiver, DatagramPacket toReceive) {
+		
+		this.socket = socket;
+		this.toReceive = toReceive;
+		this.receiver = receiver;
+	}
+
+	
+	private static DatagramSocket bind(int port) {
+		
 		try {
-			this.socket = new DatagramSocket(port);
+			return new DatagramSocket(port);
 		} catch (SocketException e) {
 			throw new RuntimeException("Error initializing UDP socket", e);
 		}
-		
-		int packetSize = Math.min(65507, receiver.getMaxPacketSize());
-		toReceive = new DatagramPacket(new byte[packetSize], 0, packetSize);
-		this.receiver = receiver;
 	}
 
 	
@@ -50,11 +75,29 @@ public class UDPReceiverHandle implements ReceiverHandle{
 			if(handle != null)
 				return handle;
 			
-			handle = new UDPSessionHandle(to, this);
+			handle = createSession(to);
 			sessions.put(to, handle);
 			return handle;
 		}
 	}
+	
+	
+	/**
+	 * Creates the {@link UDPSessionHandle} for a newly opened connection to the specified address.
+	 * @param to The address of the remote client.
+	 * @return The new UDPSessionHandle.
+	 */
+	protected UDPSessionHandle createSession(InetSocketAddress to) {
+		
+		return new UDPSessionHandle(to, this);
+	}
+
+
+	@Override
+	public CompletableFuture<SessionHandle> openSessionAsync(InetSocketAddress to) {
+		
+		return CompletableFuture.completedFuture(openSession(to));
+	}
 
 
 	@Override
@@ -94,30 +137,54 @@ public class UDPReceiverHandle implements ReceiverHandle{
 					return;
 			}
 			
-			UDPSessionHandle handle;
-			synchronized(this) {
-				
-				InetSocketAddress address = (InetSocketAddress) toReceive.getSocketAddress();
-				handle = sessions.get(address);
-				if(handle == null) {
-					
-					handle = openSession(address);
-					receiver.onConnect(handle);
-				}		
-			}
-
+			UDPSessionHandle handle = acceptSession((InetSocketAddress) toReceive.getSocketAddress());
 			BinaryReader reader = new BinaryReader(toReceive.getData(), toReceive.getOffset(), toReceive.getLength());
 			readPackets(handle, reader);
 		}
 	}
 	
 	
+	/**
+	 * Gets the {@link UDPSessionHandle} for the client that sent a datagram from the specified
+	 * address. If no such UDPSessionHandle exists, one is opened and the {@link PacketReceiver}
+	 * is notified of the new connection.
+	 * @param address The address from which a datagram was received.
+	 * @return The UDPSessionHandle of the client.
+	 */
+	protected UDPSessionHandle acceptSession(InetSocketAddress address) {
+		
+		synchronized(this) {
+			
+			UDPSessionHandle handle = sessions.get(address);
+			if(handle == null) {
+				
+				handle = openSession(address);
+				receiver.onConnect(handle);
+			}
+			
+			return handle;
+		}
+	}
+	
+	
+	/**
+	 * Checks whether the calling Thread is reading incoming datagrams. Such threads must never block
+	 * waiting for a connection to become writable, as they read the acknowledgements that make it writable.
+	 * @return True if called while reading a datagram.
+	 */
+	public static boolean isReceiving() {
+		
+		return RECEIVING.get();
+	}
+	
+	
 	public void readPackets(UDPSessionHandle handle, BinaryReader reader) {
 		
+		RECEIVING.set(Boolean.TRUE);
 		try {
 			if(!handle.readHeader(reader)) {
 				
-				System.out.println("Error reading packet from client " + toReceive.getAddress() + ": Unkown header in packet data");
+				System.out.println("Error reading packet from client " + handle.getAddress() + ": Unkown header in packet data");
 				return;
 			}
 			
@@ -127,14 +194,37 @@ public class UDPReceiverHandle implements ReceiverHandle{
 				Packet packet = receiver.readPacket(id, reader);
 				receiver.onReceive(handle, packet);
 			}
+			
+			Packet[] reordered;
+			while((reordered = handle.nextReordered()) != null) {
+				
+				for(Packet packet: reordered)
+					receiver.onReceive(handle, packet);
+			}
 		}catch(Throwable e) {
 			
-			System.err.println("Error reading packet from client " + toReceive.getAddress() + ": ");
+			System.err.println("Error reading packet from client " + handle.getAddress() + ": ");
 			e.printStackTrace();
+		} finally {
+			RECEIVING.set(Boolean.FALSE);
 		}
 	}
 	
 
+	/**
+	 * Sends a single datagram to the specified address.
+	 * @param data The array containing the datagram.
+	 * @param offset The offset of the datagram within the array.
+	 * @param length The length of the datagram.
+	 * @param to The address to which the datagram should be sent.
+	 * @throws IOException If an error is encountered sending the datagram.
+	 */
+	protected void send(byte[] data, int offset, int length, InetSocketAddress to) throws IOException {
+		
+		socket.send(new DatagramPacket(data, offset, length, to));
+	}
+	
+
 	@Override
 	public void close() {
 		
@@ -1,12 +1,20 @@
 package me.michael4797.network.protocol;
 
 import java.io.IOException;
-import java.net.DatagramPacket;
 import java.net.InetSocketAddress;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
 import me.michael4797.network.PacketBuffer;
 import me.michael4797.network.PacketData;
 import me.michael4797.network.PacketReceiver;
+import me.michael4797.network.ReassemblyBuffer;
+import me.michael4797.network.ReorderBuffer;
 import me.michael4797.network.packet.Packet;
 import me.michael4797.network.packet.PacketKick;
 import me.michael4797.util.BinaryReader;
@@ -18,18 +26,54 @@ public class UDPSessionHandle implements SessionHandle{
 	protected static final byte MISSING_PACKETS_HEADER = 13;
 	protected static final byte RELIABLE_HEADER = 12;
 	protected static final byte UNRELIABLE_HEADER = 11;
+	protected static final byte ACK_FLAG = 0x20;
+	protected static final byte CHANNEL_FLAG = 0x40;
+	protected static final byte FRAGMENT_FLAG = 0x10;
+	protected static final int FRAGMENT_HEADER_SIZE = 12;
+	protected static final long REASSEMBLY_TIMEOUT = TimeUnit.SECONDS.toNanos(5);
+	protected static final int ACK_SIZE = 4;
+	protected static final int ACK_FREQUENCY = 2;
+	protected static final long ACK_DELAY = TimeUnit.MILLISECONDS.toNanos(5);
+	protected static final int MAX_MISSING_RANGES = 32;
+	protected static final long PACING_QUANTUM = TimeUnit.MILLISECONDS.toNanos(1);
+	protected static final int REORDER_THRESHOLD = 3;
+	protected static final Packet[] NO_PACKETS = new Packet[0];
 
 	protected int lastSent;
+	protected int lastMessage;
+	protected int lastTransmitted;
 	protected int lastReceived;
-	protected int waitingForPacket;
+	protected int highestReceived;
+	protected int reported;
+	protected boolean reorderScheduled;
 	protected long lastResendTime;
+	protected int requested;
+	protected boolean requestPending;
+	protected int lastAcked;
+	protected int unacknowledged;
+	protected boolean ackScheduled;
+	protected ScheduledFuture<?> retransmitTimer;
+	protected int recoveryPoint;
+	protected long nextSendTime;
+	protected boolean pumpScheduled;
 	
 	protected boolean reliable = false;
+	protected volatile boolean closed;
 	
 	protected final InetSocketAddress address;
 	protected final UDPReceiverHandle handle;
 	protected final PacketBuffer packetBuffer;
+	protected final ReorderBuffer reorderBuffer;
+	protected final DeliveryChannel[] channels;
+	protected final ReassemblyBuffer reassemblyBuffer;
+	protected final ArrayDeque<Packet[]> reassembled = new ArrayDeque<>();
+	protected final ArrayDeque<Integer> retransmits = new ArrayDeque<>();
 	protected final BinaryWriter writer;
+	protected final BinaryWriter control;
+	protected final RttEstimator rtt = new RttEstimator();
+	protected final CongestionControl congestion;
+	protected final SendQueue queue;
+	protected final ReentrantLock lock = new ReentrantLock();
 	
 	
 	public UDPSessionHandle(InetSocketAddress address, UDPReceiverHandle handle) {
@@ -37,10 +81,26 @@ public class UDPSessionHandle implements SessionHandle{
 		this.address = address;
 		this.handle = handle;
 		packetBuffer = new PacketBuffer(handle.receiver.getPacketBufferSize());
+		reorderBuffer = new ReorderBuffer(handle.receiver.getPacketBufferSize());
 		writer = new BinaryWriter();
+		long reliableBytes = handle.receiver.getMaxMessageSize() + (long) handle.receiver.getPacketBufferSize() * handle.receiver.getMaxPacketSize();
+		reassemblyBuffer = new ReassemblyBuffer(handle.receiver.getMaxMessageSize(), (int) Math.min(reliableBytes, Integer.MAX_VALUE), REASSEMBLY_TIMEOUT);
+		channels = new DeliveryChannel[handle.receiver.getChannelCount() + 1];
+		channels[0] = new DeliveryChannel(0, DeliveryMode.RELIABLE_ORDERED, writer, reorderBuffer.maxSize);
+		for(int i = 1; i < channels.length; ++i)
+			channels[i] = new DeliveryChannel(i, handle.receiver.getChannelMode(i - 1), new BinaryWriter(), reorderBuffer.maxSize);
+		
+		control = new BinaryWriter();
+		congestion = handle.receiver.getCongestionControl().apply(getMaxDatagramSize());
+		queue = new SendQueue(this);
 		lastReceived = -1;
 		lastSent = -1;
-		waitingForPacket = -1;
+		lastTransmitted = -1;
+		lastAcked = -1;
+		recoveryPoint = -1;
+		highestReceived = -1;
+		reported = -1;
+		requested = -1;
 	}
 	
 
@@ -59,51 +119,622 @@ public class UDPSessionHandle implements SessionHandle{
 
 
 	@Override
-	public void close() {}
+	public void close() {
+		
+		lock.lock();
+		try {
+			closed = true;
+			if(retransmitTimer != null)
+				retransmitTimer.cancel(false);
+			
+			queue.close();
+			retransmits.clear();
+			packetBuffer.clear();
+			reorderBuffer.clear();
+			reassemblyBuffer.clear();
+			reassembled.clear();
+			for(DeliveryChannel channel: channels)
+				channel.clear();
+		} finally {
+			lock.unlock();
+		}
+	}
 
 
 	@Override
-	public void forceReliability(boolean reliable) throws IOException {
+	public boolean isWritable() {
+		
+		return queue.isWritable();
+	}
+
+
+	@Override
+	public int getBufferedBytes() {
+
+		return writer.getPosition();
+	}
+
+
+	@Override
+	public int getBufferedBytes(int channel) {
+
+		return getChannel(channel).writer.getPosition();
+	}
+	
+	/**
+	 * Gets the state of the specified channel, as configured by {@link PacketReceiver#setChannels(DeliveryMode...)}.
+	 * @param channel The channel.
+	 * @return The DeliveryChannel.
+	 */
+	protected DeliveryChannel getChannel(int channel) {
 		
-		if(!this.reliable && reliable)
-			launchPacket();
+		if(channel < 0 || channel >= channels.length - 1)
+			throw new IllegalArgumentException("Unknown channel " + channel);
 		
-		this.reliable = reliable;
+		return channels[channel + 1];
 	}
 
 
-	public void writeHeader(BinaryWriter writer) {
+	/**
+	 * Gets the number of reliable datagrams that have been sent, but not yet acknowledged
+	 * by the remote client.
+	 * @return The number of datagrams in flight.
+	 */
+	public int getInFlight() {
+		
+		lock.lock();
+		try {
+			return lastTransmitted - lastAcked;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Gets the total length of the reliable datagrams that have been sent, but not yet
+	 * acknowledged by the remote client, and are retained in case they must be resent.
+	 * @return The number of bytes in flight.
+	 */
+	public int getBytesInFlight() {
+		
+		lock.lock();
+		try {
+			return packetBuffer.getBytes();
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Gets the estimated round trip time of this connection. The estimate is updated whenever
+	 * the remote client acknowledges a reliable datagram, or resends a missing one.
+	 * @return The RttEstimator of this connection.
+	 */
+	public RttEstimator getRtt() {
+		
+		return rtt;
+	}
+	
+	/**
+	 * Gets the CongestionControl that limits the reliable datagrams this connection may have in flight.
+	 * @return The CongestionControl of this connection.
+	 */
+	public CongestionControl getCongestionControl() {
+		
+		return congestion;
+	}
+	
+	/**
+	 * Gets the largest number of bytes that a datagram may hold before it is launched. Room is
+	 * left for an acknowledgement to be added to the datagram's header.
+	 * @return The largest datagram size.
+	 */
+	protected int getMaxDatagramSize() {
+		
+		return handle.receiver.getMaxPacketSize() - ACK_SIZE;
+	}
+
+
+	@Override
+	public void forceReliability(boolean reliable) throws IOException {
+		
+		if(!this.reliable && reliable) {
+			
+			awaitWritable();
+			lock.lock();
+			try {
+				launch(writer);
+			} finally {
+				lock.unlock();
+			}
+		}
+		
+		this.reliable = reliable;
+	}
+	
+	/**
+	 * Writes the header of a new datagram on the specified channel. Reliable datagrams are numbered
+	 * once they are launched, so that they are numbered in the order they are sent, even though each
+	 * channel batches its Packets separately.
+	 * @param channel The channel of the datagram.
+	 */
+	protected void writeHeader(DeliveryChannel channel) {
 		
-		if(this.reliable) {
+		BinaryWriter writer = channel.writer;
+		if(channel.id == 0 ? this.reliable : channel.mode.isReliable()) {
 		
 			writer.writeByte(RELIABLE_HEADER);
-			writer.writeInt(++lastSent);
+			writer.writeInt(0);
+			writer.writeByte((byte) channel.id);
 		}
-		else
+		else if(channel.id == 0) {
+			
 			writer.writeByte(UNRELIABLE_HEADER);
+			return;
+		}
+		else {
+			
+			writer.writeByte((byte) (UNRELIABLE_HEADER | CHANNEL_FLAG));
+			writer.writeByte((byte) channel.id);
+		}
+		
+		if(channel.mode.isSequenced())
+			writer.writeInt(channel.nextSequence());
+	}
+	
+	/**
+	 * Gets the length of the header written by {@link #writeHeader(DeliveryChannel)}.
+	 * @param channel The channel of the datagram.
+	 * @return The length of the header.
+	 */
+	protected int getHeaderSize(DeliveryChannel channel) {
+		
+		if(channel.id == 0)
+			return reliable ? 10 : 1;
+		
+		return (channel.mode.isReliable() ? 6 : 2) + (channel.mode.isSequenced() ? 4 : 0);
 	}
 	
 	
 	@Override
-	public synchronized void launchPacket() throws IOException{
+	public void launchPacket() throws IOException{
+		
+		awaitWritable();
+		lock.lock();
+		try {
+			for(DeliveryChannel channel: channels)
+				launch(channel.writer);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Sends the datagram batched by the specified BinaryWriter. Reliable datagrams are numbered and
+	 * queued until they fit within the congestion window. The caller must hold this handle's lock.
+	 * @param writer The BinaryWriter of a channel.
+	 * @throws IOException If an error is encountered sending the datagram.
+	 */
+	protected void launch(BinaryWriter writer) throws IOException {
 		
 		if(!writer.hasData())
 			return;
+		
+		byte[] data = writer.getRawData();
+		int length = writer.getPosition();
+		if((data[0] & ~FRAGMENT_FLAG) == RELIABLE_HEADER) {
 			
-		byte[] packet = writer.getData();
-		if(reliable)
-			packetBuffer.addPacket(lastSent, packet);
+			writer.setPosition(1);
+			writer.writeInt(++lastSent);
+			
+			PooledBuffer packet = compose(data, length, queue.isEmpty() && retransmits.isEmpty() && canTransmit(length + ACK_SIZE));
+			writer.setPosition(0);
+			try {
+				queue.offer(packet, true);
+			} catch (IOException e) {
+				
+				handle.closeSession(this);
+				handle.receiver.onDisconnect(this);
+				throw e;
+			}
+			
+			pump();
+			return;
+		}
+		
+		if(unacknowledged > 0) {
+			
+			PooledBuffer packet = compose(data, length, true);
+			try {
+				handle.send(packet.getData(), 0, packet.getLength(), address);
+			} finally {
+				packet.release();
+			}
+		}
+		else
+			handle.send(data, 0, length, address);
 		
 		writer.setPosition(0);
-		DatagramPacket toSend = new DatagramPacket(packet, 0, packet.length, address);
-		handle.socket.send(toSend);
+	}
+	
+	/**
+	 * If the {@link OverflowPolicy} is {@link OverflowPolicy#BLOCK BLOCK}, waits until the queue of reliable datagrams
+	 * waiting for room in the congestion window is writable. Threads that read incoming datagrams never wait, since the
+	 * queue only drains once they read acknowledgements, and neither does a Thread that already holds this handle's lock.
+	 * @throws IOException If the connection is closed, or the Thread is interrupted while waiting.
+	 */
+	protected void awaitWritable() throws IOException {
+		
+		if(!lock.isHeldByCurrentThread() && !UDPReceiverHandle.isReceiving())
+			queue.awaitWritable();
+	}
+	
+	/**
+	 * Copies the specified datagram into a pooled buffer. If the remote client is owed an acknowledgement,
+	 * and the datagram is about to be sent, the acknowledgement is added to the header of the copy.
+	 * @param data The array containing the datagram.
+	 * @param length The length of the datagram.
+	 * @param acknowledge Whether the datagram is sent without delay, so may carry an acknowledgement.
+	 * @return The pooled copy of the datagram.
+	 */
+	protected PooledBuffer compose(byte[] data, int length, boolean acknowledge) {
+		
+		if(!acknowledge || unacknowledged == 0) {
+			
+			PooledBuffer packet = handle.receiver.getBufferPool().acquire(length);
+			System.arraycopy(data, 0, packet.getData(), 0, length);
+			return packet;
+		}
+		
+		control.setPosition(0);
+		control.writeByte((byte) (data[0] | ACK_FLAG));
+		control.writeInt(lastReceived);
+		unacknowledged = 0;
+		
+		int header = control.getPosition();
+		PooledBuffer packet = handle.receiver.getBufferPool().acquire(header + length - 1);
+		System.arraycopy(control.getRawData(), 0, packet.getData(), 0, header);
+		System.arraycopy(data, 1, packet.getData(), header, length - 1);
+		return packet;
+	}
+	
+	/**
+	 * Checks whether a reliable datagram of the specified length fits within the congestion window, and
+	 * whether the PacketBuffer has room to store it without discarding unacknowledged datagrams.
+	 * @param length The length of the datagram.
+	 * @return True if the datagram may be sent.
+	 */
+	protected boolean canTransmit(int length) {
+		
+		if(lastTransmitted - lastAcked >= packetBuffer.maxSize)
+			return false;
+		
+		int inFlight = packetBuffer.getBytes();
+		return inFlight == 0 || inFlight + length <= congestion.getWindow();
+	}
+	
+	/**
+	 * Sends reliable datagrams while they fit within the congestion window. Datagrams the remote client reported
+	 * missing are resent first, and remain counted as in flight, so new datagrams wait for them. They are not held
+	 * back by the window themselves, since acknowledgements are cumulative, and the datagrams sent after a missing
+	 * one are only acknowledged once it arrives. Datagrams are paced over the round trip time at a rate slightly
+	 * above the congestion window, so a full window is spread over time instead of being sent in a single burst.
+	 * If the next datagram is not due yet, the pump is scheduled on the {@link SessionTimer}, if the window is full,
+	 * it resumes once data is acknowledged.
+	 * @throws IOException If an error is encountered sending a datagram.
+	 */
+	protected void pump() throws IOException {
+		
+		while(!closed) {
+			
+			PacketData missing = retransmits.isEmpty() ? null : packetBuffer.getPacket(retransmits.peek());
+			PooledBuffer data = missing == null ? queue.peek() : null;
+			if(missing == null && data == null)
+				return;
+			
+			int length = missing != null ? missing.getLength() : data.getLength();
+			if(missing == null && !canTransmit(length))
+				return;
+			
+			long time = System.nanoTime();
+			long wait = nextSendTime - time - PACING_QUANTUM;
+			if(wait > 0) {
+				
+				schedulePump(wait);
+				return;
+			}
+			
+			nextSendTime = Math.max(nextSendTime, time) + getPacingInterval(length);
+			if(missing != null) {
+				
+				retransmits.remove();
+				packetBuffer.resend(missing.getPacketNumber(), time);
+				handle.send(missing.getPacketData(), 0, length, address);
+				continue;
+			}
+			
+			data.retain();
+			queue.remove();
+			packetBuffer.addPacket(++lastTransmitted, data);
+			armRetransmit();
+			handle.send(data.getData(), 0, data.getLength(), address);
+		}
+	}
+	
+	/**
+	 * Gets the time to wait after sending a datagram of the specified length before the next may be sent.
+	 * The interval paces the congestion window over the smoothed round trip time, with a gain of 5/4 so
+	 * that the pacing alone never keeps the window from filling.
+	 * @param length The length of the datagram that was sent.
+	 * @return The pacing interval, in nanoseconds.
+	 */
+	protected long getPacingInterval(int length) {
+		
+		if(!rtt.hasSample())
+			return 0;
+		
+		return length * rtt.getSmoothedRtt() * 4 / (5L * Math.max(1, congestion.getWindow()));
+	}
+	
+	
+	private void schedulePump(long delay) {
+		
+		if(pumpScheduled)
+			return;
+		
+		pumpScheduled = true;
+		SessionTimer.schedule(() -> {
+			
+			lock.lock();
+			try {
+				pumpScheduled = false;
+				pump();
+			} catch (IOException e) {
+				
+				System.err.println("Error sending packet data to client " + address + ": ");
+				e.printStackTrace();
+			} finally {
+				lock.unlock();
+			}
+		}, delay);
+	}
+	
+	
+	/**
+	 * Acknowledges every reliable datagram received so far with a standalone datagram,
+	 * unless the acknowledgement has already been sent along with other data.
+	 * @throws IOException If an error is encountered sending the acknowledgement.
+	 */
+	protected void acknowledge() throws IOException {
+		
+		lock.lock();
+		try {
+			ackScheduled = false;
+			if(closed || unacknowledged == 0)
+				return;
+			
+			control.setPosition(0);
+			control.writeByte((byte) (UNRELIABLE_HEADER | ACK_FLAG));
+			control.writeInt(lastReceived);
+			unacknowledged = 0;
+			handle.send(control.getRawData(), 0, control.getPosition(), address);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Notes that a reliable datagram has been received. Every {@value #ACK_FREQUENCY} datagrams are
+	 * acknowledged immediately, otherwise the acknowledgement is delayed, in the hope that it can be
+	 * sent along with a response.
+	 * @throws IOException If an error is encountered sending the acknowledgement.
+	 */
+	protected void received() throws IOException {
+		
+		if(++unacknowledged >= ACK_FREQUENCY) {
+			
+			acknowledge();
+			return;
+		}
+		
+		if(ackScheduled)
+			return;
+		
+		ackScheduled = true;
+		SessionTimer.schedule(() -> {
+			
+			try {
+				acknowledge();
+			} catch (IOException e) {
+				
+				System.err.println("Error sending acknowledgement to client " + address + ": ");
+				e.printStackTrace();
+			}
+		}, ACK_DELAY);
+	}
+	
+	/**
+	 * Handles an acknowledgement from the remote client, discarding every reliable datagram that
+	 * it has received, since they will never need to be resent.
+	 * @param number The number of the most recent reliable datagram received by the remote client.
+	 * @throws IOException If an error is encountered sending datagrams that now fit within the congestion window.
+	 */
+	protected void acknowledged(int number) throws IOException {
+		
+		if(number - lastAcked <= 0 || lastTransmitted - number < 0)
+			return;
+		
+		long sample = getRttSample(number);
+		if(sample >= 0)
+			rtt.sample(sample);
+		else
+			rtt.resetBackoff();
+		
+		Iterator<Integer> missing = retransmits.iterator();
+		while(missing.hasNext()) {
+			
+			if(missing.next() - number <= 0)
+				missing.remove();
+		}
+		
+		int bytes = packetBuffer.getBytes();
+		lastAcked = number;
+		packetBuffer.acknowledge(number);
+		congestion.onAcknowledged(bytes - packetBuffer.getBytes(), sample, rtt);
+		
+		if(retransmitTimer != null) {
+			
+			retransmitTimer.cancel(false);
+			retransmitTimer = null;
+		}
+		
+		armRetransmit();
+		pump();
+	}
+	
+	/**
+	 * Measures the round trip time of a new acknowledgement. Since acknowledgements are cumulative, an acknowledgement
+	 * is delayed until every earlier datagram is received, so no sample is taken if any newly acknowledged datagram had
+	 * to be resent, or while recovering from loss. Otherwise, the time the acknowledged datagram was waiting for a missing
+	 * one would be measured too.
+	 * @param number The number of the most recent datagram acknowledged.
+	 * @return The round trip time, or -1 if it could not be measured.
+	 */
+	protected long getRttSample(int number) {
+		
+		if(recoveryPoint - lastAcked > 0)
+			return -1;
+		
+		PacketData data = null;
+		for(int packetNumber = lastAcked + 1; number - packetNumber >= 0; ++packetNumber) {
+			
+			data = packetBuffer.getPacket(packetNumber);
+			if(data == null || data.getTransmissions() > 1)
+				return -1;
+		}
+		
+		return System.nanoTime() - data.getSendTime();
+	}
+	
+	/**
+	 * Reports lost reliable datagrams to the CongestionControl. Losses reported by the remote client
+	 * are only reported once per window, until every datagram sent before the first loss is acknowledged.
+	 * @param timeout Whether the loss was detected by the retransmission timeout expiring.
+	 */
+	protected void lost(boolean timeout) {
+		
+		if(!timeout && recoveryPoint - lastAcked > 0)
+			return;
+		
+		recoveryPoint = lastTransmitted;
+		congestion.onLoss(timeout);
+	}
+	
+	/**
+	 * Starts the retransmission timer if any reliable datagrams are unacknowledged, and the timer is not running.
+	 * Every session shares the timer thread of {@link SessionTimer}.
+	 */
+	protected void armRetransmit() {
+		
+		if(closed || retransmitTimer != null || lastTransmitted == lastAcked)
+			return;
+		
+		retransmitTimer = SessionTimer.schedule(this::retransmit, rtt.getRto());
+	}
+	
+	/**
+	 * Called once the retransmission timeout expires without any new acknowledgements. The oldest unacknowledged
+	 * datagram is resent, since the remote client is waiting on it. The newest is resent as well, so that if any
+	 * datagrams in between were lost, the remote client finds the gap and asks for them.
+	 */
+	protected void retransmit() {
+		
+		lock.lock();
+		try {
+			retransmitTimer = null;
+			if(closed || lastTransmitted == lastAcked)
+				return;
+			
+			rtt.backoff();
+			lost(true);
+			long time = System.nanoTime();
+			PacketData oldest = packetBuffer.resend(lastAcked + 1, time);
+			if(oldest != null)
+				handle.send(oldest.getPacketData(), 0, oldest.getLength(), address);
+			
+			if(lastTransmitted != lastAcked + 1) {
+				
+				PacketData newest = packetBuffer.resend(lastTransmitted, time);
+				if(newest != null)
+					handle.send(newest.getPacketData(), 0, newest.getLength(), address);
+			}
+			
+			armRetransmit();
+		} catch (IOException e) {
+			
+			System.err.println("Error resending packet data to client " + address + ": ");
+			e.printStackTrace();
+		} finally {
+			lock.unlock();
+		}
 	}
 	
 	
 	@Override
-	public synchronized void sendPacket(Packet packet) throws IOException{
+	public void sendPacket(Packet packet) throws IOException{
 		
+		awaitWritable();
+		lock.lock();
+		try {
+			writePacket(packet, channels[0]);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	
+	@Override
+	public void sendPacket(Packet packet, int channel) throws IOException{
 		
+		DeliveryChannel delivery = getChannel(channel);
+		awaitWritable();
+		lock.lock();
+		try {
+			writePacket(packet, delivery);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	
+	@Override
+	public void sendPacket(EncodedPacket packet) throws IOException{
+		
+		awaitWritable();
+		lock.lock();
+		try {
+			if(getHeaderSize(channels[0]) + packet.getLength() > getMaxDatagramSize()) {
+				
+				writePacket(packet.getPacket(), channels[0]);
+				return;
+			}
+			
+			if(writer.hasData() && writer.getPosition() + packet.getLength() > getMaxDatagramSize())
+				launch(writer);
+			
+			if(!writer.hasData())
+				writeHeader(channels[0]);
+			
+			packet.writeTo(writer);
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	
+	protected void writePacket(Packet packet, DeliveryChannel channel) throws IOException{
+		
+		BinaryWriter writer = channel.writer;
 		int startIndex = writer.getPosition();
 		boolean empty = startIndex == 0;
 		
@@ -112,23 +743,113 @@ public class UDPSessionHandle implements SessionHandle{
 			handle.receiver.writePacketID(packet, writer);
 			handle.receiver.writePacket(packet, writer);
 			
-			if(writer.getPosition() > handle.receiver.getMaxPacketSize()){
+			if(writer.getPosition() > getMaxDatagramSize()){
 				
 				writer.setPosition(startIndex);
-				launchPacket();
+				launch(writer);
 			}
 			else
 				return;
 		}
 
-		writeHeader(writer);
+		writeHeader(channel);
 		handle.receiver.writePacketID(packet, writer);
 		handle.receiver.writePacket(packet, writer);
 		
-		if(writer.getPosition() > handle.receiver.getMaxPacketSize()){
+		if(writer.getPosition() > getMaxDatagramSize())
+			writeFragments(packet, channel);
+	}
+	
+	/**
+	 * Splits a Packet that is too large for a single datagram into fragments, each sent as a datagram of its own
+	 * on the same channel, so that it is delivered in the same way as any other Packet on the channel. Each fragment
+	 * is marked with the {@link #FRAGMENT_FLAG}, and carries the number of the message, its length, and the position
+	 * of the fragment within it. The Packet must be the only one written to the channel's current datagram. Reliable
+	 * fragments are admitted to the queue as a single message, see {@link SendQueue#admit(long)}, and the sending
+	 * Thread waits for the queue to become writable between them, see {@link #awaitFragment()}.
+	 * @param packet The Packet that was written.
+	 * @param channel The channel the Packet was written to.
+	 * @throws IOException If an error is encountered sending a fragment, or the queue can not admit the message.
+	 */
+	protected void writeFragments(Packet packet, DeliveryChannel channel) throws IOException {
+		
+		BinaryWriter writer = channel.writer;
+		int header = getHeaderSize(channel);
+		int length = writer.getPosition() - header;
+		if(length > handle.receiver.getMaxMessageSize() || header + FRAGMENT_HEADER_SIZE >= getMaxDatagramSize()) {
 			
 			writer.setPosition(0);
-			throw new RuntimeException("Packet overflow exception: Packet " + packet.getClass() + " is larger than the specified max packet size.");
+			throw new RuntimeException("Packet overflow exception: Packet " + packet.getClass() + " is larger than the specified max message size.");
+		}
+		
+		byte[] message = Arrays.copyOfRange(writer.getRawData(), header, writer.getPosition());
+		boolean queued = writer.getRawData()[0] == RELIABLE_HEADER;
+		if(queued) {
+			
+			int fragment = getMaxDatagramSize() - header - FRAGMENT_HEADER_SIZE;
+			long fragments = (length + fragment - 1) / fragment;
+			try {
+				queue.admit(length + fragments * (header + FRAGMENT_HEADER_SIZE + ACK_SIZE));
+			} catch (IOException e) {
+				
+				writer.setPosition(0);
+				handle.closeSession(this);
+				handle.receiver.onDisconnect(this);
+				throw e;
+			}
+		}
+		
+		int id = ++lastMessage;
+		int offset = 0;
+		writer.setPosition(header);
+		try {
+			while(true) {
+				
+				writer.getRawData()[0] |= FRAGMENT_FLAG;
+				writer.writeInt(id);
+				writer.writeInt(length);
+				writer.writeInt(offset);
+				
+				int end = Math.min(length, offset + getMaxDatagramSize() - writer.getPosition());
+				while(offset < end)
+					writer.writeByte(message[offset++]);
+				
+				launch(writer);
+				if(offset == length)
+					return;
+				
+				if(queued) {
+					
+					awaitFragment();
+					launch(writer);
+				}
+				
+				writeHeader(channel);
+			}
+		} finally {
+			if(queued)
+				queue.admitted();
+		}
+	}
+	
+	/**
+	 * If the {@link OverflowPolicy} is {@link OverflowPolicy#BLOCK BLOCK}, waits between the reliable fragments of a
+	 * message until the queue is writable, so that a large message does not fill the queue far past its high watermark.
+	 * This handle's lock is released while waiting, so that acknowledgements can drain the queue. Other Threads may
+	 * batch Packets on the channel meanwhile, so the caller launches them before writing the next fragment. Nothing
+	 * waits if the lock is held more than once, or by a Thread that reads incoming datagrams.
+	 * @throws IOException If the connection is closed, or the Thread is interrupted while waiting.
+	 */
+	protected void awaitFragment() throws IOException {
+		
+		if(queue.policy != OverflowPolicy.BLOCK || queue.isWritable() || lock.getHoldCount() != 1 || UDPReceiverHandle.isReceiving())
+			return;
+		
+		lock.unlock();
+		try {
+			queue.awaitWritable();
+		} finally {
+			lock.lock();
 		}
 	}
 
@@ -136,74 +857,383 @@ public class UDPSessionHandle implements SessionHandle{
 	public boolean readHeader(BinaryReader reader) throws IOException {
 
 		byte header = reader.readByte();
-		if(header == UNRELIABLE_HEADER)
+		lock.lock();
+		try {
+			if((header & ACK_FLAG) != 0) {
+				
+				acknowledged(reader.readInt());
+				header &= ~ACK_FLAG;
+			}
+			
+			boolean fragment = (header & FRAGMENT_FLAG) != 0;
+			header &= ~FRAGMENT_FLAG;
+			if(header == UNRELIABLE_HEADER)
+				return deliver(reader, false, fragment);
+			
+			if(header == (UNRELIABLE_HEADER | CHANNEL_FLAG))
+				return readChannel(reader, false, fragment);
+			
+			if(header == RELIABLE_HEADER)
+				return readReliable(reader, fragment);
+			
+			if(header == MISSING_PACKETS_HEADER)
+				return readMissing(reader);
+		} finally {
+			lock.unlock();
+		}
+		
+		return false;
+	}
+	
+	
+	/**
+	 * Reads the header of a reliable datagram. Datagrams are acknowledged, and missing datagrams requested, in a
+	 * single sequence shared by every channel, but are delivered according to their own channel's sequence. So the
+	 * ReorderBuffer of this handle only records which datagrams arrived out of order, while their Packets are held
+	 * by their channel, if they must wait for an earlier datagram on that channel.
+	 * @param reader The BinaryReader containing the datagram.
+	 * @param fragment Whether the datagram holds a fragment of a larger Packet.
+	 * @return True if the header was valid.
+	 * @throws IOException If an error is encountered sending an acknowledgement or request.
+	 */
+	protected boolean readReliable(BinaryReader reader, boolean fragment) throws IOException {
+		
+		int packetNumber = reader.readInt();
+		if(requestPending && packetNumber == requested) {
+			
+			rtt.sample(System.nanoTime() - lastResendTime);
+			requestPending = false;
+		}
+		
+		if(packetNumber - lastReceived <= 0 || reorderBuffer.contains(packetNumber)) {
+			
+			reader.setPosition(reader.getData().length);
+			++unacknowledged;
+			acknowledge();
+			requestMissing(false);
 			return true;
-
-		if(header == RELIABLE_HEADER){
+		}
+		
+		if(packetNumber - lastReceived > reorderBuffer.maxSize) {
 			
-			int packetNumber = reader.readInt();
-			if(waitingForPacket == packetNumber)
-				waitingForPacket = -1;
+			reader.setPosition(reader.getData().length);
+			return true;
+		}
+		
+		if(packetNumber - lastReceived == 1) {
 			
-			if(packetNumber - lastReceived > 1){
-
-				if(waitingForPacket != -1)
-					return true;
+			lastReceived = packetNumber;
+			while(reorderBuffer.take(lastReceived + 1) != null) {
 				
-				long time = System.nanoTime();
-				if(time - lastResendTime < 3000)
-					return true;
+				++lastReceived;
+				++unacknowledged;
+			}
+			
+			if(highestReceived - lastReceived < 0)
+				highestReceived = lastReceived;
+			
+			received();
+		}
+		else {
+			
+			reorderBuffer.put(packetNumber, NO_PACKETS);
+			if(packetNumber - highestReceived > 0)
+				highestReceived = packetNumber;
+			
+			requestMissing(report(highestReceived - REORDER_THRESHOLD));
+			if(!reorderScheduled && highestReceived - reported > 1)
+				scheduleReport(highestReceived - 1);
+		}
+
+		return readChannel(reader, true, fragment);
+	}
+	
+	/**
+	 * Reads the channel of a datagram, and its sequence number if the channel is sequenced. Datagrams that
+	 * are next in their channel's sequence are delivered immediately. Reliable datagrams that arrived ahead of
+	 * a missing datagram on the same channel are held until it arrives, while stale unreliable datagrams are discarded.
+	 * Datagrams whose header does not match the reliability of their channel are rejected before the channel's
+	 * sequence is touched.
+	 * @param reader The BinaryReader containing the datagram.
+	 * @param reliable Whether the header of the datagram marked it as reliable.
+	 * @param fragment Whether the datagram holds a fragment of a larger Packet.
+	 * @return True if the channel is known, and matches the reliability of the datagram.
+	 * @throws IOException If an error is encountered reading a held Packet.
+	 */
+	protected boolean readChannel(BinaryReader reader, boolean reliable, boolean fragment) throws IOException {
+		
+		int id = reader.readByte() & 0xFF;
+		if(id >= channels.length)
+			return false;
+		
+		DeliveryChannel channel = channels[id];
+		if(channel.mode.isReliable() != reliable)
+			return false;
+		
+		if(!channel.mode.isSequenced())
+			return deliver(reader, reliable, fragment);
+		
+		int number = reader.readInt();
+		if(channel.accept(number))
+			return deliver(reader, reliable, fragment);
+		
+		if(reliable)
+			channel.hold(number, fragment ? readFragment(reader, true) : readPackets(reader));
+		else
+			reader.setPosition(reader.getData().length);
+		
+		return true;
+	}
+	
+	/**
+	 * Delivers the remainder of a datagram immediately. The Packets of a whole datagram are read by the
+	 * {@link UDPReceiverHandle}, while a fragment is reassembled, and once its Packet is whole, the Packet
+	 * is delivered by {@link #nextReordered()} after the datagram.
+	 * @param reader The BinaryReader containing the datagram.
+	 * @param reliable Whether the datagram was sent reliably.
+	 * @param fragment Whether the datagram holds a fragment of a larger Packet.
+	 * @return True.
+	 * @throws IOException If an error is encountered reading a reassembled Packet.
+	 */
+	protected boolean deliver(BinaryReader reader, boolean reliable, boolean fragment) throws IOException {
+		
+		if(fragment) {
+			
+			Packet[] packets = readFragment(reader, reliable);
+			if(packets.length > 0)
+				reassembled.add(packets);
+		}
+		
+		return true;
+	}
+	
+	/**
+	 * Reads the fragment held by the remainder of a datagram into the ReassemblyBuffer. If the remote client
+	 * has sent more partial reliable messages than the ReassemblyBuffer may hold, it is disconnected.
+	 * @param reader The BinaryReader containing the datagram.
+	 * @param reliable Whether the datagram was sent reliably.
+	 * @return The reassembled Packet if the fragment completed it, otherwise no Packets.
+	 * @throws IOException If an error is encountered reading the reassembled Packet, or the remote client was
+	 * disconnected.
+	 */
+	protected Packet[] readFragment(BinaryReader reader, boolean reliable) throws IOException {
+		
+		int id = reader.readInt();
+		int length = reader.readInt();
+		int offset = reader.readInt();
+		byte[] message;
+		try {
+			message = reassemblyBuffer.add(id, length, offset, reader, reliable, System.nanoTime());
+		} catch (IOException e) {
+			
+			handle.closeSession(this);
+			handle.receiver.onDisconnect(this);
+			throw e;
+		}
+		
+		if(message == null)
+			return NO_PACKETS;
+		
+		BinaryReader packet = new BinaryReader(message, 0, message.length);
+		int packetId = handle.receiver.readPacketID(packet);
+		return new Packet[] {handle.receiver.readPacket(packetId, packet)};
+	}
+	
+	/**
+	 * Reads every remaining Packet from the specified datagram, so that they may be delivered later.
+	 * @param reader The BinaryReader containing the datagram.
+	 * @return The Packets read from the datagram.
+	 * @throws IOException If an error is encountered reading a Packet.
+	 */
+	protected Packet[] readPackets(BinaryReader reader) throws IOException {
+		
+		ArrayList<Packet> packets = new ArrayList<>();
+		while(reader.hasMoreData()) {
+			
+			int id = handle.receiver.readPacketID(reader);
+			packets.add(handle.receiver.readPacket(id, reader));
+		}
+		
+		return packets.toArray(new Packet[0]);
+	}
+	
+	/**
+	 * Takes the next Packet that was reassembled from fragments, or else the Packets of the next reliable datagram
+	 * on any channel if it arrived ahead of a missing datagram on that channel, which has since been received.
+	 * @return The Packets of the next datagram, or null if none are ready.
+	 */
+	public Packet[] nextReordered() {
+		
+		lock.lock();
+		try {
+			if(!reassembled.isEmpty())
+				return reassembled.poll();
+			
+			for(DeliveryChannel channel: channels) {
 				
-				lastResendTime = time;
+				Packet[] packets = channel.next();
+				if(packets != null)
+					return packets;
+			}
+			
+			return null;
+		} finally {
+			lock.unlock();
+		}
+	}
+	
+	/**
+	 * Marks every gap up to the specified datagram as reportable. A gap is only reported once
+	 * {@link #REORDER_THRESHOLD} later datagrams have arrived, or once it has outlived the reordering
+	 * window, so that datagrams which were merely reordered in transit are not resent.
+	 * @param limit The last datagram whose gaps may be reported.
+	 * @return True if a gap that was not reported before is now reportable.
+	 */
+	protected boolean report(int limit) {
 		
-				waitingForPacket = lastReceived + 1;
-				synchronized(this) {
-					
-					launchPacket();
-					writer.writeByte(MISSING_PACKETS_HEADER);
-					writer.writeInt(waitingForPacket);
-					launchPacket();
-				}
+		if(limit - reported <= 0)
+			return false;
+		
+		int from = (reported - lastReceived > 0 ? reported : lastReceived) + 1;
+		reported = limit;
+		return limit - from >= 0 && reorderBuffer.nextMissing(from, limit) - limit <= 0;
+	}
+	
+	/**
+	 * Reports every gap up to the specified datagram once the reordering window elapses,
+	 * if it has not filled or been reported by then.
+	 * @param limit The last datagram whose gaps will be reported.
+	 */
+	protected void scheduleReport(int limit) {
+		
+		long delay = rtt.hasSample() ? Math.max(RttEstimator.GRANULARITY, rtt.getSmoothedRtt() / 8) : ACK_DELAY;
+		reorderScheduled = SessionTimer.schedule(() -> {
+			
+			lock.lock();
+			try {
+				reorderScheduled = false;
+				if(closed)
+					return;
 				
-				reader.setPosition(reader.getData().length);
+				requestMissing(report(limit));
+				if(highestReceived - reported > 1)
+					scheduleReport(highestReceived - 1);
+			} catch (IOException e) {
+				System.err.println("Error requesting missing packet data from client " + address + ": ");
+				e.printStackTrace();
+			} finally {
+				lock.unlock();
 			}
-			else if(packetNumber <= lastReceived)
-				reader.setPosition(reader.getData().length);
-			else
-				lastReceived = packetNumber;
-
-			return true;
+		}, delay) != null;
+	}
+	
+	/**
+	 * Asks the remote client to resend every reliable datagram that is still missing, up to the
+	 * last reportable gap. The missing datagrams are listed as ranges, so that datagrams which arrived
+	 * out of order are not resent. A request is sent immediately when a new gap becomes reportable,
+	 * otherwise it is only repeated once a round trip has passed without the gap filling.
+	 * @param gap Whether a new gap just became reportable.
+	 * @throws IOException If an error is encountered sending the request.
+	 */
+	protected void requestMissing(boolean gap) throws IOException {
+		
+		long time = System.nanoTime();
+		if(reported - lastReceived <= 0 || (!gap && time - lastResendTime < rtt.getInterval()))
+			return;
+		
+		control.setPosition(0);
+		control.writeByte(MISSING_PACKETS_HEADER);
+		int countIndex = control.getPosition();
+		control.writeShort((short) 0);
+		
+		short count = 0;
+		int first = reorderBuffer.nextMissing(lastReceived + 1, reported);
+		int start = first;
+		while(start - reported <= 0 && count < MAX_MISSING_RANGES) {
+			
+			int to = reported - start < Short.MAX_VALUE ? reported : start + Short.MAX_VALUE - 1;
+			int end = reorderBuffer.nextHeld(start, to);
+			control.writeInt(start);
+			control.writeShort((short) (end - start));
+			++count;
+			
+			start = end - reported <= 0 ? reorderBuffer.nextMissing(end, reported) : end;
 		}
 		
-		if(header == MISSING_PACKETS_HEADER) {
+		if(count == 0)
+			return;
+		
+		int end = control.getPosition();
+		control.setPosition(countIndex);
+		control.writeShort(count);
+		control.setPosition(end);
+		requestPending = requested != first;
+		requested = first;
+		lastResendTime = time;
+		unacknowledged = 0;
+		handle.send(control.getRawData(), 0, control.getPosition(), address);
+	}
+	
+	
+	protected boolean readMissing(BinaryReader reader) throws IOException {
+		
+		int count = reader.readShort();
+		long time = System.nanoTime();
+		for(int i = 0; i < count; ++i) {
 			
-			int packetNumber = reader.readInt();
-			if(packetBuffer.maxSize < packetNumber - lastSent) {
+			int start = reader.readInt();
+			int length = reader.readShort();
+			if(i == 0) {
 				
-				synchronized(this) {
+				acknowledged(start - 1);
+				lost(false);
+			}
+			
+			for(int packetNumber = start; packetNumber - (start + length) < 0; ++packetNumber) {
+				
+				if(lastTransmitted - packetNumber < 0)
+					break;
+				
+				if(packetNumber - lastAcked <= 0)
+					continue;
+				
+				PacketData data = packetBuffer.getPacket(packetNumber);
+				if(data == null) {
 					
-					forceReliability(false);
-					sendPacket(new PacketKick("Too many missed packets"));
-					launchPacket();
+					kick("Too many missed packets");
 					handle.closeSession(this);
 					handle.receiver.onDisconnect(this);
+					return true;
 				}
 				
-				return true;
-			}
-			
-			for(PacketData data: packetBuffer){
+				if(data.getTransmissions() > 1 && time - data.getSendTime() < rtt.getInterval())
+					continue;
 				
-				if(data.getPacketNumber() >= packetNumber) {
-					
-					DatagramPacket toSend = new DatagramPacket(data.getPacketData(), 0, data.getPacketData().length, address);
-					handle.socket.send(toSend);
-				}
+				if(retransmits.contains(packetNumber))
+					continue;
+				
+				retransmits.add(packetNumber);
 			}
-			
-			return true;
 		}
 		
-		return false;
+		pump();
+		return true;
+	}
+	
+	/**
+	 * Sends a {@link PacketKick} to the remote client in a standalone unreliable datagram. The datagram is sent
+	 * immediately, bypassing the channels and the queue of reliable datagrams, so it never waits for either.
+	 * The caller must hold this handle's lock.
+	 * @param reason The reason the remote client is kicked.
+	 * @throws IOException If an error is encountered sending the datagram.
+	 */
+	protected void kick(String reason) throws IOException {
+		
+		PacketKick packet = new PacketKick(reason);
+		control.setPosition(0);
+		control.writeByte(UNRELIABLE_HEADER);
+		handle.receiver.writePacketID(packet, control);
+		handle.receiver.writePacket(packet, control);
+		handle.send(control.getRawData(), 0, control.getPosition(), address);
 	}
 }
@@ -0,0 +1,186 @@
+package me.michael4797.network.protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.channels.DatagramChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import me.michael4797.network.PacketReceiver;
+
+/**
+ * A UDP {@link ReceiverHandle} that spreads ingress across several receive threads. Each shard
+ * owns its own {@link DatagramChannel} bound to the same port with SO_REUSEPORT, so the kernel
+ * distributes datagrams between the shards by hashing their source address. Since the hash is
+ * stable for a given client, every datagram from one client is read by the same shard, and the
+ * sequencing state of its {@link UDPSessionHandle} is only ever touched by that shard's thread.
+ * Sessions are looked up without locking, so the shards never contend with each other on the
+ * path of an established session.
+ */
+public class UDPShardedReceiverHandle implements ReceiverHandle{
+
+	protected final PacketReceiver<?> receiver;
+	protected final Shard[] shards;
+	protected final ConcurrentHashMap<InetSocketAddress, UDPSessionHandle> sessions = new ConcurrentHashMap<>();
+
+
+	public UDPShardedReceiverHandle(int port, PacketReceiver<?> receiver) {
+
+		this(port, receiver, Runtime.getRuntime().availableProcessors());
+	}
+
+
+	public UDPShardedReceiverHandle(int port, PacketReceiver<?> receiver, int shardCount) {
+
+		if(shardCount < 1)
+			throw new IllegalArgumentException("shardCount must be positive");
+
+		this.receiver = receiver;
+
+		DatagramChannel first = open(port, shardCount > 1);
+		if(!first.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT))
+			shardCount = 1;
+
+		shards = new Shard[shardCount];
+		shards[0] = new Shard(first);
+		for(int i = 1; i < shardCount; ++i)
+			shards[i] = new Shard(open(shards[0].getPort(), true));
+	}
+
+
+	private static DatagramChannel open(int port, boolean reusePort) {
+
+		try {
+
+			DatagramChannel channel = DatagramChannel.open();
+			if(reusePort && channel.supportedOptions().contains(StandardSocketOptions.SO_REUSEPORT))
+				channel.setOption(StandardSocketOptions.SO_REUSEPORT, true);
+
+			return channel.bind(new InetSocketAddress(port));
+		} catch (IOException e) {
+
+			throw new RuntimeException("Error initializing UDP socket", e);
+		}
+	}
+
+
+	@Override
+	public int getPort() {
+
+		return shards[0].getPort();
+	}
+
+
+	@Override
+	public UDPSessionHandle openSession(InetSocketAddress to) {
+
+		return sessions.computeIfAbsent(to, (address) -> new UDPSessionHandle(address, shards[Math.floorMod(address.hashCode(), shards.length)]));
+	}
+
+
+	@Override
+	public CompletableFuture<SessionHandle> openSessionAsync(InetSocketAddress to) {
+
+		return CompletableFuture.completedFuture(openSession(to));
+	}
+
+
+	@Override
+	public UDPSessionHandle getSession(InetSocketAddress to) {
+
+		return sessions.get(to);
+	}
+
+
+	@Override
+	public void closeSession(SessionHandle handle) {
+
+		sessions.remove(handle.getAddress(), handle);
+		handle.close();
+	}
+
+
+	/**
+	 * Gets the {@link UDPSessionHandle} for the client that sent a datagram to the specified shard. If no
+	 * such UDPSessionHandle exists, one is created, and the {@link PacketReceiver} is notified of the new
+	 * connection once it has been added, without holding any lock shared with the other shards.
+	 * @param address The address from which a datagram was received.
+	 * @param shard The shard that received the datagram.
+	 * @return The UDPSessionHandle of the client.
+	 */
+	protected UDPSessionHandle acceptSession(InetSocketAddress address, Shard shard) {
+
+		UDPSessionHandle handle = sessions.get(address);
+		if(handle != null)
+			return handle;
+
+		UDPSessionHandle[] created = new UDPSessionHandle[1];
+		handle = sessions.computeIfAbsent(address, (to) -> created[0] = new UDPSessionHandle(to, shard));
+		if(handle == created[0])
+			receiver.onConnect(handle);
+
+		return handle;
+	}
+
+
+	@Override
+	public void receive() {
+
+		for(int i = 1; i < shards.length; ++i) {
+
+			Thread thread = new Thread(shards[i]::receive, "UDP-Shard-" + getPort() + "-" + i);
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		shards[0].receive();
+		close();
+	}
+
+
+	@Override
+	public void close() {
+
+		for(Shard shard: shards)
+			shard.close();
+	}
+
+
+	protected class Shard extends UDPChannelReceiverHandle{
+
+
+		protected Shard(DatagramChannel channel) {
+
+			super(channel, UDPShardedReceiverHandle.this.receiver);
+		}
+
+
+		@Override
+		public UDPSessionHandle openSession(InetSocketAddress to) {
+
+			return UDPShardedReceiverHandle.this.openSession(to);
+		}
+
+
+		@Override
+		public UDPSessionHandle getSession(InetSocketAddress to) {
+
+			return UDPShardedReceiverHandle.this.getSession(to);
+		}
+
+
+		@Override
+		public void closeSession(SessionHandle handle) {
+
+			UDPShardedReceiverHandle.this.closeSession(handle);
+		}
+
+
+		@Override
+		protected UDPSessionHandle acceptSession(InetSocketAddress address) {
+
+			return UDPShardedReceiverHandle.this.acceptSession(address, this);
+		}
+	}
+}
@@ -0,0 +1,273 @@
+package me.michael4797.network.protocol;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+import me.michael4797.network.PacketReceiver;
+import me.michael4797.network.packet.Packet;
+
+/**
+ * A {@link ReceiverHandle} that connects processes on the same machine through Unix domain sockets.
+ * If the {@link PacketReceiver} was created with a path, the socket is bound to that path. Otherwise
+ * the socket is bound to a file named after the port in the temporary directory, which may be overridden
+ * with the {@value #DIRECTORY_PROPERTY} system property, so that a numeric port continues to identify
+ * a receiver. Remote paths are passed as unresolved addresses, created by {@link #address(Path)}.
+ */
+public class UnixDomainReceiverHandle implements ReceiverHandle{
+
+	public static final String DIRECTORY_PROPERTY = "me.michael4797.network.uds";
+
+	private static final AtomicLong CLIENTS = new AtomicLong();
+
+	protected final ServerSocketChannel socket;
+	protected final PacketReceiver<?> receiver;
+	protected final WorkerPool workers;
+	protected final Path directory;
+	protected final Path path;
+	protected final int port;
+	protected final HashMap<InetSocketAddress, UnixDomainSessionHandle> sessions = new HashMap<>();
+	protected volatile boolean closed;
+
+
+	public UnixDomainReceiverHandle(int port, PacketReceiver<?> receiver) {
+
+		this(port, receiver, new WorkerPool(VirtualThreads.platformFactory()));
+	}
+
+
+	public UnixDomainReceiverHandle(int port, PacketReceiver<?> receiver, WorkerPool workers) {
+
+		String property = System.getProperty(DIRECTORY_PROPERTY);
+		directory = property != null ? Paths.get(property) : Paths.get(System.getProperty("java.io.tmpdir"), "me.michael4797.network");
+		try {
+
+			socket = ServerSocketChannel.open(StandardProtocolFamily.UNIX);
+			if(receiver.getPath() != null) {
+
+				path = receiver.getPath().toAbsolutePath();
+				this.port = port;
+				removeStale(path);
+				socket.bind(UnixDomainSocketAddress.of(path));
+			}
+			else if(port != 0) {
+
+				Files.createDirectories(directory);
+				path = portPath(port);
+				this.port = port;
+				removeStale(path);
+				socket.bind(UnixDomainSocketAddress.of(path));
+			}
+			else {
+
+				Files.createDirectories(directory);
+				Path bound = null;
+				int next = 0;
+				for(int attempt = 0; bound == null; ++attempt) {
+
+					if(attempt == 1000)
+						throw new IOException("No free Unix domain socket port");
+
+					next = ThreadLocalRandom.current().nextInt(49152, 65536);
+					Path candidate = portPath(next);
+					if(Files.exists(candidate))
+						continue;
+
+					try {
+						socket.bind(UnixDomainSocketAddress.of(candidate));
+						bound = candidate;
+					} catch (IOException e) {
+						if(Files.notExists(candidate))
+							throw e;
+					}
+				}
+
+				path = bound;
+				this.port = next;
+			}
+		} catch (IOException e) {
+
+			throw new RuntimeException("Error initializing Unix domain socket", e);
+		}
+
+		this.receiver = receiver;
+		this.workers = workers;
+	}
+
+
+	/**
+	 * Creates an address that identifies the Unix domain socket at the specified path, for use
+	 * with {@link PacketReceiver#openConnection(InetSocketAddress)}.
+	 * @param path The path of the remote socket.
+	 * @return An unresolved address whose host name is the absolute path.
+	 */
+	public static InetSocketAddress address(Path path) {
+
+		return InetSocketAddress.createUnresolved(path.toAbsolutePath().toString(), 0);
+	}
+
+
+	private static void removeStale(Path path) throws IOException {
+
+		if(!Files.exists(path))
+			return;
+
+		boolean listening;
+		try {
+			SocketChannel.open(UnixDomainSocketAddress.of(path)).close();
+			listening = true;
+		} catch (IOException e) {
+			listening = false;
+		}
+
+		if(listening)
+			throw new IOException("Address " + path + " is already in use");
+
+		Files.deleteIfExists(path);
+	}
+
+
+	protected Path portPath(int port) {
+
+		return directory.resolve(port + ".sock");
+	}
+
+
+	protected Path path(InetSocketAddress to) {
+
+		if(to.isUnresolved())
+			return Paths.get(to.getHostString());
+
+		return portPath(to.getPort());
+	}
+
+
+	@Override
+	public int getPort() {
+
+		return port;
+	}
+
+
+	@Override
+	public SessionHandle openSession(InetSocketAddress to) {
+
+		synchronized(this) {
+
+			UnixDomainSessionHandle handle = sessions.get(to);
+			if(handle != null)
+				return handle;
+		}
+
+		UnixDomainSessionHandle handle;
+		try {
+
+			handle = new UnixDomainSessionHandle(SocketChannel.open(UnixDomainSocketAddress.of(path(to))), to, this);
+		} catch (IOException e) {
+
+			throw new RuntimeException(e);
+		}
+
+		synchronized(this) {
+
+			UnixDomainSessionHandle existing = sessions.get(to);
+			if(existing != null) {
+
+				handle.close();
+				return existing;
+			}
+
+			sessions.put(to, handle);
+			workers.open(to);
+			workers.execute(to, handle::receive);
+			return handle;
+		}
+	}
+
+
+	@Override
+	public void closeSession(SessionHandle handle) {
+
+		synchronized(this) {
+			InetSocketAddress address = handle.getAddress();
+			handle.close();
+			sessions.remove(address);
+			workers.close(address);
+		}
+	}
+
+
+	@Override
+	public SessionHandle getSession(InetSocketAddress to) {
+
+		synchronized(this) {
+
+			return sessions.get(to);
+		}
+	}
+
+
+	protected void receivePacket(SessionHandle handle, Packet packet) {
+
+		receiver.onReceive(handle, packet);
+	}
+
+
+	@Override
+	public void receive() {
+
+		while(socket.isOpen()) {
+
+			try {
+
+				SocketChannel client = socket.accept();
+
+				synchronized(this) {
+
+					InetSocketAddress address = InetSocketAddress.createUnresolved(path + "#" + CLIENTS.incrementAndGet(), 0);
+					UnixDomainSessionHandle handle = new UnixDomainSessionHandle(client, address, this);
+					sessions.put(address, handle);
+					workers.open(address);
+					receiver.onConnect(handle);
+					workers.execute(address, handle::receive);
+				}
+			} catch (IOException e) {
+
+				if(socket.isOpen())
+					e.printStackTrace();
+			}
+		}
+
+		close();
+	}
+
+
+	@Override
+	public synchronized void close() {
+
+		if(closed)
+			return;
+
+		closed = true;
+
+		try {
+			socket.close();
+			Files.deleteIfExists(path);
+		} catch (IOException e) {}
+
+		for(UnixDomainSessionHandle handle: sessions.values())
+			handle.close();
+
+		workers.close();
+		sessions.clear();
+	}
+}
@@ -0,0 +1,233 @@
+package me.michael4797.network.protocol;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.locks.ReentrantLock;
+
+import me.michael4797.network.PacketReceiver;
+import me.michael4797.network.packet.Packet;
+import me.michael4797.util.BinaryInputStream;
+import me.michael4797.util.BinaryWriter;
+
+public class UnixDomainSessionHandle implements SessionHandle{
+
+	protected final SocketChannel channel;
+	protected final InetSocketAddress address;
+	protected final UnixDomainReceiverHandle handle;
+	protected final InputStream in;
+	protected final BinaryWriter writer;
+	protected final ReentrantLock lock = new ReentrantLock();
+	protected final SendQueue queue;
+	protected Thread sender;
+	protected boolean reliable;
+	protected boolean reliableBatch;
+	protected volatile boolean closed;
+
+
+	public UnixDomainSessionHandle(SocketChannel channel, InetSocketAddress address, UnixDomainReceiverHandle handle) {
+
+		this.channel = channel;
+		this.address = address;
+		this.handle = handle;
+		in = new BufferedInputStream(new ChannelInput(), 8192);
+		writer = new BinaryWriter();
+		queue = new SendQueue(this);
+	}
+
+
+	public void receive() {
+
+		boolean running = true;
+		BinaryInputStream reader = new BinaryInputStream(in);
+		while(running && channel.isOpen()) {
+
+			try {
+				if(!reader.hasMoreData())
+					break;
+
+				int id = handle.receiver.readPacketID(reader);
+				Packet packet = handle.receiver.readPacket(id, reader);
+				handle.receivePacket(this, packet);
+			} catch (Throwable t) {
+				if(channel.isOpen() && !channel.isConnected()) {
+
+					System.err.println("Error reading packet: ");
+					t.printStackTrace();
+				}
+				else
+					running = false;
+			}
+		}
+
+		disconnected();
+	}
+
+
+	protected void send() {
+
+		try {
+			PooledBuffer data;
+			while((data = queue.take()) != null) {
+
+				ByteBuffer buffer = ByteBuffer.wrap(data.getData(), 0, data.getLength());
+				while(buffer.hasRemaining())
+					channel.write(buffer);
+
+				queue.remove();
+			}
+		} catch (IOException e) {
+
+			disconnected();
+		} catch (InterruptedException e) {}
+	}
+
+
+	protected void disconnected() {
+
+		if(!closed) {
+
+			handle.closeSession(this);
+			handle.receiver.onDisconnect(this);
+		}
+	}
+
+
+	@Override
+	public PacketReceiver<?> getReceiver() {
+
+		return handle.receiver;
+	}
+
+
+	@Override
+	public InetSocketAddress getAddress() {
+
+		return address;
+	}
+
+
+	@Override
+	public void close() {
+
+		if(closed)
+			return;
+
+		closed = true;
+		queue.close();
+		try {
+			channel.close();
+		}catch(IOException e) {}
+	}
+
+
+	@Override
+	public boolean isWritable() {
+
+		return queue.isWritable();
+	}
+
+
+	@Override
+	public int getBufferedBytes() {
+
+		return writer.getPosition();
+	}
+
+
+	@Override
+	public void forceReliability(boolean reliable) throws IOException {
+
+		this.reliable = reliable;
+	}
+
+
+	@Override
+	public void sendPacket(Packet packet) throws IOException {
+
+		lock.lock();
+		try {
+			handle.receiver.writePacketID(packet, writer);
+			handle.receiver.writePacket(packet, writer);
+			reliableBatch |= reliable;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public void sendPacket(EncodedPacket packet) throws IOException {
+
+		lock.lock();
+		try {
+			packet.writeTo(writer);
+			reliableBatch |= reliable;
+		} finally {
+			lock.unlock();
+		}
+	}
+
+
+	@Override
+	public void launchPacket() throws IOException {
+
+		queue.awaitWritable();
+		try {
+			lock.lock();
+			try {
+				if(!writer.hasData())
+					return;
+
+				int length = writer.getPosition();
+				PooledBuffer data = handle.receiver.getBufferPool().acquire(length);
+				System.arraycopy(writer.getRawData(), 0, data.getData(), 0, length);
+				writer.setPosition(0);
+				boolean batch = reliableBatch;
+				reliableBatch = false;
+				if(sender == null)
+					sender = VirtualThreads.start(this::send, "UDS-Send-" + address);
+
+				queue.offer(data, batch);
+			} finally {
+				lock.unlock();
+			}
+		} catch (IOException e) {
+
+			disconnected();
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Reads directly from the channel. The streams returned by {@link java.nio.channels.Channels}
+	 * hold the channel's blocking lock for the duration of a read, which would stall every
+	 * concurrent write from {@link #send()} until data arrives. It is buffered, so that Packets
+	 * are not read from the channel one byte at a time.
+	 */
+	protected class ChannelInput extends InputStream{
+
+		private final byte[] single = new byte[1];
+
+
+		@Override
+		public int read() throws IOException {
+
+			return read(single, 0, 1) < 0 ? -1 : single[0] & 255;
+		}
+
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+
+			if(len == 0)
+				return 0;
+
+			return channel.read(ByteBuffer.wrap(b, off, len));
+		}
+	}
+}
@@ -0,0 +1,92 @@
+package me.michael4797.network.protocol;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A convenience class used by the virtual {@link TransportProtocol TransportProtocols}
+ * and {@link me.michael4797.network.HeartBeat HeartBeats}. Virtual threads are looked up
+ * reflectively so that this library still runs on Java versions without them, in which
+ * case daemon platform threads are used instead.
+ */
+public final class VirtualThreads {
+
+	private static final Method OF_VIRTUAL;
+	private static final Method FACTORY;
+
+	static {
+
+		Method ofVirtual = null;
+		Method factory = null;
+		try {
+
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			factory = Class.forName("java.lang.Thread$Builder").getMethod("factory");
+		} catch (ReflectiveOperationException e) {
+
+			ofVirtual = null;
+			factory = null;
+		}
+
+		OF_VIRTUAL = ofVirtual;
+		FACTORY = factory;
+	}
+
+
+	private VirtualThreads() {}
+
+	/**
+	 * Checks whether the running JVM supports virtual threads.
+	 * @return True if virtual threads are supported.
+	 */
+	public static boolean isSupported() {
+
+		return OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Gets a ThreadFactory that creates virtual threads, or daemon platform threads if
+	 * virtual threads are not supported by the running JVM.
+	 * @return The ThreadFactory.
+	 */
+	public static ThreadFactory factory() {
+
+		if(OF_VIRTUAL != null) {
+
+			try {
+				return (ThreadFactory) FACTORY.invoke(OF_VIRTUAL.invoke(null));
+			} catch (ReflectiveOperationException e) {}
+		}
+
+		return platformFactory();
+	}
+
+	/**
+	 * Gets a ThreadFactory that creates daemon platform threads.
+	 * @return The ThreadFactory.
+	 */
+	public static ThreadFactory platformFactory() {
+
+		return (r) -> {
+
+			Thread thread = new Thread(r);
+			thread.setDaemon(true);
+			return thread;
+		};
+	}
+
+	/**
+	 * Starts the specified task on a new virtual thread, or a daemon platform thread if virtual
+	 * threads are not supported by the running JVM.
+	 * @param task The task to run.
+	 * @param name The name of the new thread.
+	 * @return The started thread.
+	 */
+	public static Thread start(Runnable task, String name) {
+
+		Thread thread = factory().newThread(task);
+		thread.setName(name);
+		thread.start();
+		return thread;
+	}
+}
@@ -1,138 +1,278 @@
 package me.michael4797.network.protocol;
 
 import java.net.InetSocketAddress;
-import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
 
 /**
  * A convenience class used by the asynchronous {@link TransportProtocol TransportProtocols}.
- * This class creates a pool of worker threads used to execute basic tasks. One worker thread
- * is created per remote client.
+ * This class executes basic tasks on behalf of remote clients. Tasks submitted for the same
+ * client are always executed one at a time, in the order they were submitted.<br/>
+ * A WorkerPool either multiplexes every client onto a fixed number of shared threads, in which
+ * case a client with no pending tasks does not occupy any thread, or creates one dedicated worker
+ * thread per remote client. Only dedicated worker threads may be used for tasks that block
+ * indefinitely, such as reading from a socket.
  */
 public class WorkerPool {
 
-	private final HashMap<InetSocketAddress, Worker> workers;
+	private static final int LANE_BATCH = 64;
+
+	private final ConcurrentHashMap<InetSocketAddress, Worker> workers;
+	private final ThreadFactory factory;
+	private final ExecutorService executor;
 	private boolean closed;
-	
+
 	/**
-	 * Creates a new WorkerPool with no worker threads.
+	 * Creates a new WorkerPool that shares one thread per available processor among all clients.
 	 */
 	public WorkerPool() {
-		
-		this.workers = new HashMap<>();
+
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a new WorkerPool that shares the specified number of threads among all clients.
+	 * @param threads The number of shared worker threads.
+	 */
+	public WorkerPool(int threads) {
+
+		if(threads < 1)
+			throw new IllegalArgumentException("threads must be positive");
+
+		this.workers = new ConcurrentHashMap<>();
+		this.factory = null;
+		AtomicInteger count = new AtomicInteger();
+		ThreadFactory platform = VirtualThreads.platformFactory();
+		this.executor = Executors.newFixedThreadPool(threads, (r) -> {
+
+			Thread thread = platform.newThread(r);
+			thread.setName("Worker-Thread-" + count.getAndIncrement());
+			return thread;
+		});
+	}
+
+	/**
+	 * Creates a new WorkerPool with no worker threads, that creates a dedicated worker thread
+	 * for each client using the specified ThreadFactory.
+	 * @see VirtualThreads#factory()
+	 * @param factory The ThreadFactory used to create worker threads.
+	 */
+	public WorkerPool(ThreadFactory factory) {
+
+		this.workers = new ConcurrentHashMap<>();
+		this.factory = factory;
+		this.executor = null;
 	}
-	
+
 	/**
-	 * Executes the specified task on the worker thread for the specified client.
-	 * If no such worker thread exists, the task is ignored.
-	 * @param to The address of the client whose worker thread should be used.
+	 * Executes the specified task on behalf of the specified client. Tasks for the same
+	 * client are executed in order. If the client was never opened, the task is ignored.
+	 * @param to The address of the client on whose behalf the task is executed.
 	 * @param action The task to perform.
+	 * @return True if the task was queued, false if it was ignored.
 	 */
-	public void execute(InetSocketAddress to, Runnable action) {
-		
+	public boolean execute(InetSocketAddress to, Runnable action) {
+
 		Worker worker = workers.get(to);
-		if(worker != null)
-			worker.execute(action);
+		if(worker == null)
+			return false;
+
+		worker.execute(action);
+		return true;
 	}
-	
+
 	/**
-	 * Creates a worker thread for a client with the specified address, if one does not
+	 * Opens a worker for a client with the specified address, if one does not
 	 * already exist.
-	 * @param to The client for which a worker thread should be created.
+	 * @param to The client for which a worker should be opened.
 	 */
 	public synchronized void open(InetSocketAddress to) {
 
 		if(closed)
 			return;
-		
+
 		if(workers.containsKey(to))
 			return;
-		
-		workers.put(to, new Worker(to));
+
+		workers.put(to, executor == null ? new ThreadWorker(to) : new Lane());
 	}
-	
+
 	/**
-	 * Closes the worker thread for the client with the specified address.
-	 * @param to The client whose worker thread should be closed.
+	 * Closes the worker for the client with the specified address. Tasks that have
+	 * not yet started are discarded.
+	 * @param to The client whose worker should be closed.
 	 */
 	public synchronized void close(InetSocketAddress to) {
 
 		if(closed)
 			return;
-		
+
 		Worker worker = workers.remove(to);
 		if(worker != null)
 			worker.close();
 	}
-	
+
 	/**
-	 * Closes all worker threads in this WorkerPool.
+	 * Closes all workers in this WorkerPool, along with any shared threads.
 	 */
 	public synchronized void close() {
 
 		if(closed)
 			return;
-		
+
 		ArrayList<Worker> values = new ArrayList<>(workers.size());
 		values.addAll(workers.values());
 		for(Worker worker: values)
 			worker.close();
-		
+
 		workers.clear();
+		if(executor != null)
+			executor.shutdownNow();
+
 		closed = true;
 	}
-	
-	
-	private class Worker implements Runnable{
-		
-		private final ArrayDeque<Runnable> queue;
-		private volatile boolean open;
-		
-		
-		private Worker(InetSocketAddress address) {
-			
-			queue = new ArrayDeque<>();
-			open = true;
-			Thread thread = new Thread(this, "Worker-Thread-" + address);
-			thread.setDaemon(true);
+
+
+	private static abstract class Worker {
+
+		protected final MpscQueue<Runnable> queue = new MpscQueue<>();
+		protected volatile boolean open = true;
+
+
+		protected abstract void execute(Runnable action);
+
+
+		protected void close() {
+
+			open = false;
+		}
+
+
+		protected void discard() {
+
+			while(queue.poll() != null);
+		}
+	}
+
+
+	private class Lane extends Worker implements Runnable{
+
+		private final AtomicBoolean scheduled = new AtomicBoolean();
+
+
+		@Override
+		protected void execute(Runnable action) {
+
+			if(!open)
+				return;
+
+			queue.offer(action);
+			if(!scheduled.get() && scheduled.compareAndSet(false, true))
+				schedule();
+		}
+
+
+		@Override
+		public void run() {
+
+			for(int i = 0; i < LANE_BATCH; ++i) {
+
+				if(!open) {
+
+					discard();
+					return;
+				}
+
+				Runnable action = queue.poll();
+				if(action == null) {
+
+					scheduled.set(false);
+					if(queue.isEmpty() || !scheduled.compareAndSet(false, true))
+						return;
+
+					continue;
+				}
+
+				try {
+					action.run();
+				} catch (Throwable t) {
+
+					System.err.println("Error executing worker task: ");
+					t.printStackTrace();
+				}
+			}
+
+			schedule();
+		}
+
+
+		private void schedule() {
+
+			try {
+				executor.execute(this);
+			} catch (RejectedExecutionException e) {}
+		}
+	}
+
+
+	private class ThreadWorker extends Worker implements Runnable{
+
+		private final Thread thread;
+		private final AtomicBoolean parked = new AtomicBoolean();
+
+
+		private ThreadWorker(InetSocketAddress address) {
+
+			thread = factory.newThread(this);
+			thread.setName("Worker-Thread-" + address);
 			thread.start();
 		}
-		
-		
-		private void close() {
-			
-			open = false;
-			queue.clear();
+
+
+		@Override
+		protected void close() {
+
+			super.close();
+			LockSupport.unpark(thread);
 		}
-		
-		
-		private synchronized void execute(Runnable action) {
-			
-			queue.add(action);
-			notifyAll();
+
+
+		@Override
+		protected void execute(Runnable action) {
+
+			queue.offer(action);
+			if(parked.get() && parked.compareAndSet(true, false))
+				LockSupport.unpark(thread);
 		}
-		
-		
+
+
 		@Override
 		public void run() {
-			
+
 			while(open) {
-				
-				while(queue.isEmpty()) {
-					synchronized(this) {
-						try {
-							wait();
-						} catch (InterruptedException e) {}
-					}
-				}
-				
+
 				Runnable action = queue.poll();
-				if(action == null)					
+				if(action == null) {
+
+					parked.set(true);
+					if(queue.isEmpty() && open)
+						LockSupport.park(this);
+
+					parked.set(false);
 					continue;
-				
+				}
+
 				action.run();
 			}
+
+			discard();
 		}
 	}
 }
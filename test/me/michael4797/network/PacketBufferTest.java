@@ -0,0 +1,130 @@
+package me.michael4797.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Iterator;
+
+import org.junit.jupiter.api.Test;
+
+public class PacketBufferTest {
+
+	@Test
+	public void storesPackets() {
+
+		PacketBuffer buffer = new PacketBuffer(8);
+		for(int i = 0; i < 5; ++i)
+			buffer.addPacket(i, new byte[i + 1]);
+
+		assertEquals(5, buffer.size());
+		assertEquals(15, buffer.getBytes());
+		assertEquals(0, buffer.getFirst());
+		assertEquals(4, buffer.getLast());
+		for(int i = 0; i < 5; ++i) {
+
+			PacketData data = buffer.getPacket(i);
+			assertNotNull(data);
+			assertEquals(i, data.getPacketNumber());
+			assertEquals(i + 1, data.getLength());
+			assertEquals(1, data.getTransmissions());
+		}
+
+		assertNull(buffer.getPacket(5));
+		assertNull(buffer.getPacket(-1));
+	}
+
+
+	@Test
+	public void acknowledgeDiscardsOlderPackets() {
+
+		PacketBuffer buffer = new PacketBuffer(8);
+		for(int i = 0; i < 5; ++i)
+			buffer.addPacket(i, new byte[10]);
+
+		buffer.acknowledge(2);
+		assertEquals(2, buffer.size());
+		assertEquals(20, buffer.getBytes());
+		assertNull(buffer.getPacket(2));
+		assertNotNull(buffer.getPacket(3));
+
+		buffer.acknowledge(4);
+		assertTrue(buffer.isEmpty());
+		assertEquals(0, buffer.getBytes());
+	}
+
+
+	@Test
+	public void discardsOldestPacketsBeyondCapacity() {
+
+		PacketBuffer buffer = new PacketBuffer(4);
+		for(int i = 0; i < 6; ++i)
+			buffer.addPacket(i, new byte[1]);
+
+		assertEquals(4, buffer.size());
+		assertEquals(4, buffer.getBytes());
+		assertNull(buffer.getPacket(1));
+		assertNotNull(buffer.getPacket(2));
+		assertNotNull(buffer.getPacket(5));
+	}
+
+
+	@Test
+	public void resendCountsTransmissions() {
+
+		PacketBuffer buffer = new PacketBuffer(4);
+		buffer.addPacket(7, new byte[1]);
+
+		PacketData data = buffer.resend(7, 1234);
+		assertNotNull(data);
+		assertEquals(2, data.getTransmissions());
+		assertEquals(1234, data.getSendTime());
+		assertNull(buffer.resend(8, 1234));
+	}
+
+
+	@Test
+	public void rejectsPacketsOutOfOrder() {
+
+		PacketBuffer buffer = new PacketBuffer(4);
+		buffer.addPacket(3, new byte[1]);
+		assertThrows(IllegalArgumentException.class, () -> buffer.addPacket(3, new byte[1]));
+		assertThrows(IllegalArgumentException.class, () -> buffer.addPacket(2, new byte[1]));
+		assertThrows(IllegalArgumentException.class, () -> new PacketBuffer(0));
+	}
+
+
+	@Test
+	public void iteratesFromOldest() {
+
+		PacketBuffer buffer = new PacketBuffer(8);
+		for(int i = 0; i < 5; ++i)
+			buffer.addPacket(i, new byte[1]);
+
+		Iterator<PacketData> packets = buffer.iterator(2);
+		for(int i = 2; i < 5; ++i)
+			assertEquals(i, packets.next().getPacketNumber());
+
+		assertFalse(packets.hasNext());
+	}
+
+
+	@Test
+	public void handlesPacketNumberOverflow() {
+
+		PacketBuffer buffer = new PacketBuffer(4);
+		for(int i = Integer.MAX_VALUE - 1; i != Integer.MIN_VALUE + 2; ++i)
+			buffer.addPacket(i, new byte[1]);
+
+		assertEquals(4, buffer.size());
+		assertNotNull(buffer.getPacket(Integer.MAX_VALUE));
+		assertNotNull(buffer.getPacket(Integer.MIN_VALUE + 1));
+
+		buffer.acknowledge(Integer.MIN_VALUE);
+		assertEquals(1, buffer.size());
+		assertNotNull(buffer.getPacket(Integer.MIN_VALUE + 1));
+	}
+}
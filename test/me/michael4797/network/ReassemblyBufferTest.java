@@ -0,0 +1,128 @@
+package me.michael4797.network;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+import me.michael4797.util.BinaryReader;
+
+public class ReassemblyBufferTest {
+
+	private static final long TIMEOUT = 1000;
+
+
+	@Test
+	public void reassemblesFragmentsInAnyOrder() throws IOException {
+
+		ReassemblyBuffer buffer = new ReassemblyBuffer(100, 100, TIMEOUT);
+		byte[] message = message(10);
+
+		assertNull(buffer.add(1, 10, 8, fragment(message, 8, 10), true, 0));
+		assertNull(buffer.add(1, 10, 0, fragment(message, 0, 5), true, 0));
+		assertEquals(1, buffer.size());
+		assertArrayEquals(message, buffer.add(1, 10, 5, fragment(message, 5, 8), true, 0));
+		assertEquals(0, buffer.size());
+	}
+
+
+	@Test
+	public void reassemblesUnreliableFragments() throws IOException {
+
+		ReassemblyBuffer buffer = new ReassemblyBuffer(100, 100, TIMEOUT);
+		byte[] message = message(12);
+
+		assertNull(buffer.add(2, 12, 6, fragment(message, 6, 12), false, 0));
+		assertArrayEquals(message, buffer.add(2, 12, 0, fragment(message, 0, 6), false, 0));
+	}
+
+
+	@Test
+	public void ignoresInvalidUnreliableFragments() throws IOException {
+
+		ReassemblyBuffer buffer = new ReassemblyBuffer(100, 100, TIMEOUT);
+		byte[] message = message(10);
+
+		assertNull(buffer.add(1, 500, 0, fragment(message, 0, 10), false, 0));
+		assertNull(buffer.add(2, 10, 20, fragment(message, 0, 10), false, 0));
+		assertNull(buffer.add(3, 5, 0, fragment(message, 0, 10), false, 0));
+		assertEquals(0, buffer.size());
+	}
+
+
+	@Test
+	public void rejectsInvalidReliableFragments() throws IOException {
+
+		ReassemblyBuffer buffer = new ReassemblyBuffer(100, 100, TIMEOUT);
+		byte[] message = message(10);
+
+		assertThrows(IOException.class, () -> buffer.add(1, 500, 0, fragment(message, 0, 10), true, 0));
+		assertThrows(IOException.class, () -> buffer.add(2, 10, 20, fragment(message, 0, 10), true, 0));
+		assertThrows(IOException.class, () -> buffer.add(3, 5, 0, fragment(message, 0, 10), true, 0));
+
+		assertNull(buffer.add(4, 10, 0, fragment(message, 0, 5), true, 0));
+		assertThrows(IOException.class, () -> buffer.add(4, 10, 0, fragment(message, 0, 5), true, 0));
+		assertThrows(IOException.class, () -> buffer.add(4, 20, 5, fragment(message, 5, 10), true, 0));
+	}
+
+
+	@Test
+	public void limitsPartialReliableMessages() throws IOException {
+
+		ReassemblyBuffer buffer = new ReassemblyBuffer(100, 10, TIMEOUT);
+		byte[] message = message(20);
+
+		assertNull(buffer.add(1, 20, 0, fragment(message, 0, 6), true, 0));
+		assertThrows(IOException.class, () -> buffer.add(2, 20, 0, fragment(message, 0, 6), true, 0));
+	}
+
+
+	@Test
+	public void evictsOldestUnreliableMessagesForRoom() throws IOException {
+
+		ReassemblyBuffer buffer = new ReassemblyBuffer(10, 100, TIMEOUT);
+		byte[] message = message(10);
+
+		assertNull(buffer.add(1, 10, 0, fragment(message, 0, 6), false, 0));
+		assertNull(buffer.add(2, 10, 0, fragment(message, 0, 6), false, 0));
+		assertEquals(1, buffer.size());
+		assertNull(buffer.add(1, 10, 6, fragment(message, 6, 10), false, 0));
+		assertArrayEquals(message, buffer.add(2, 10, 6, fragment(message, 6, 10), false, 0));
+	}
+
+
+	@Test
+	public void expiresOnlyUnreliableMessages() throws IOException {
+
+		ReassemblyBuffer buffer = new ReassemblyBuffer(100, 100, TIMEOUT);
+		byte[] message = message(10);
+
+		assertNull(buffer.add(1, 10, 0, fragment(message, 0, 5), true, 0));
+		assertNull(buffer.add(2, 10, 0, fragment(message, 0, 5), false, 0));
+		assertNull(buffer.add(3, 10, 0, fragment(message, 0, 5), false, TIMEOUT));
+		assertEquals(2, buffer.size());
+		assertArrayEquals(message, buffer.add(1, 10, 5, fragment(message, 5, 10), true, TIMEOUT));
+	}
+
+
+	private static byte[] message(int length) {
+
+		byte[] message = new byte[length];
+		for(int i = 0; i < length; ++i)
+			message[i] = (byte) (i * 7 + 1);
+
+		return message;
+	}
+
+
+	private static BinaryReader fragment(byte[] message, int from, int to) {
+
+		byte[] data = Arrays.copyOfRange(message, from, to);
+		return new BinaryReader(data, 0, data.length);
+	}
+}
@@ -0,0 +1,88 @@
+package me.michael4797.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+import me.michael4797.network.packet.Packet;
+import me.michael4797.network.packet.PacketKick;
+
+public class ReorderBufferTest {
+
+	@Test
+	public void holdsAndTakesDatagrams() {
+
+		ReorderBuffer buffer = new ReorderBuffer(16);
+		Packet[] packets = {new PacketKick("a")};
+		buffer.put(5, packets);
+
+		assertTrue(buffer.contains(5));
+		assertFalse(buffer.contains(4));
+		assertFalse(buffer.contains(21));
+		assertEquals(1, buffer.size());
+		assertSame(packets, buffer.take(5));
+		assertNull(buffer.take(5));
+		assertTrue(buffer.isEmpty());
+	}
+
+
+	@Test
+	public void duplicatesAreHeldOnce() {
+
+		ReorderBuffer buffer = new ReorderBuffer(16);
+		Packet[] packets = {new PacketKick("b")};
+		buffer.put(3, new Packet[0]);
+		buffer.put(3, packets);
+
+		assertEquals(1, buffer.size());
+		assertSame(packets, buffer.take(3));
+	}
+
+
+	@Test
+	public void findsHeldAndMissingDatagrams() {
+
+		ReorderBuffer buffer = new ReorderBuffer(256);
+		buffer.put(100, new Packet[0]);
+		buffer.put(101, new Packet[0]);
+		buffer.put(170, new Packet[0]);
+
+		assertEquals(100, buffer.nextHeld(0, 255));
+		assertEquals(102, buffer.nextMissing(100, 255));
+		assertEquals(170, buffer.nextHeld(102, 255));
+		assertEquals(256, buffer.nextHeld(171, 255));
+		assertEquals(0, buffer.nextMissing(0, 255));
+		assertEquals(160, buffer.nextHeld(150, 159));
+	}
+
+
+	@Test
+	public void findsDatagramsAcrossTheRing() {
+
+		ReorderBuffer buffer = new ReorderBuffer(64);
+		buffer.put(Integer.MAX_VALUE, new Packet[0]);
+		buffer.put(Integer.MIN_VALUE + 2, new Packet[0]);
+
+		assertEquals(Integer.MAX_VALUE, buffer.nextHeld(Integer.MAX_VALUE - 10, Integer.MIN_VALUE + 10));
+		assertEquals(Integer.MIN_VALUE, buffer.nextMissing(Integer.MAX_VALUE, Integer.MIN_VALUE + 10));
+		assertEquals(Integer.MIN_VALUE + 2, buffer.nextHeld(Integer.MIN_VALUE, Integer.MIN_VALUE + 10));
+	}
+
+
+	@Test
+	public void clearDiscardsEverything() {
+
+		ReorderBuffer buffer = new ReorderBuffer(128);
+		for(int i = 0; i < 100; ++i)
+			buffer.put(i, new Packet[0]);
+
+		buffer.clear();
+		assertTrue(buffer.isEmpty());
+		assertFalse(buffer.contains(50));
+		assertEquals(128, buffer.nextHeld(0, 127));
+	}
+}
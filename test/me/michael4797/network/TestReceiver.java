@@ -0,0 +1,93 @@
+package me.michael4797.network;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+import me.michael4797.network.packet.Packet;
+import me.michael4797.network.packet.PacketKick;
+import me.michael4797.network.protocol.ReceiverHandle;
+import me.michael4797.network.protocol.SessionHandle;
+import me.michael4797.network.protocol.TransportProtocol;
+
+/**
+ * A PacketReceiver for tests. Sessions run no handshake or heartbeat. If echoing, every
+ * {@link PacketKick} received is sent straight back to its sender, otherwise its reason
+ * is added to {@link #received}.
+ */
+public class TestReceiver extends PacketReceiver<Session>{
+
+	public final LinkedBlockingQueue<String> received = new LinkedBlockingQueue<>();
+
+	private final boolean echo;
+
+
+	public TestReceiver(TransportProtocol protocol, boolean echo){
+
+		super(0, protocol);
+		this.echo = echo;
+		addPacket(PacketKick.class, PacketKick::read);
+	}
+
+
+	@Override
+	public ReceiverHandle getHandle(){
+
+		return super.getHandle();
+	}
+
+
+	@Override
+	protected void handlePacket(Session session, Packet packet){
+
+		if(!(packet instanceof PacketKick))
+			return;
+
+		String reason = ((PacketKick) packet).reason;
+		if(!echo) {
+
+			received.add(reason);
+			return;
+		}
+
+		session.sendPacketReliably(new PacketKick(reason));
+		session.launchPacket();
+	}
+
+
+	@Override
+	protected Session createSession(SessionHandle handle){
+
+		return new Session(handle, new SessionProtocol(){
+
+			@Override
+			public void onInit(Session session){}
+
+			@Override
+			public void onConnect(){}
+
+			@Override
+			public void onDisconnect(){}
+
+			@Override
+			public void onPoke(){}
+
+			@Override
+			public void onMessage(){}
+
+			@Override
+			public void onTimeout(){}
+
+			@Override
+			public byte getVersion(){
+
+				return 0;
+			}
+		});
+	}
+
+
+	@Override
+	protected Class<? extends Session> getSessionType(){
+
+		return Session.class;
+	}
+}
@@ -0,0 +1,140 @@
+package me.michael4797.network;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import me.michael4797.network.packet.PacketKick;
+import me.michael4797.network.protocol.TransportProtocol;
+
+/**
+ * Sends reliable Packets from a client to a server over the loopback interface, or within the JVM for
+ * the local protocols, and checks that the server's echoes all arrive back at the client, in order.
+ */
+public class TransportRoundTripTest {
+
+	private static final int PACKETS = 200;
+	private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(10);
+
+
+	@Test
+	public void udpSync() throws Exception {
+
+		roundTrip(TransportProtocol.UDP_SYNC);
+	}
+
+
+	@Test
+	public void udpAsync() throws Exception {
+
+		roundTrip(TransportProtocol.UDP_ASYNC);
+	}
+
+
+	@Test
+	public void udpVirtual() throws Exception {
+
+		roundTrip(TransportProtocol.UDP_VIRTUAL);
+	}
+
+
+	@Test
+	public void udpChannel() throws Exception {
+
+		roundTrip(TransportProtocol.UDP_CHANNEL);
+	}
+
+
+	@Test
+	public void udpSharded() throws Exception {
+
+		roundTrip(TransportProtocol.UDP_SHARDED);
+	}
+
+
+	@Test
+	public void tcpAsync() throws Exception {
+
+		roundTrip(TransportProtocol.TCP_ASYNC);
+	}
+
+
+	@Test
+	public void tcpSync() throws Exception {
+
+		roundTrip(TransportProtocol.TCP_SYNC);
+	}
+
+
+	@Test
+	public void tcpNio() throws Exception {
+
+		roundTrip(TransportProtocol.TCP_NIO);
+	}
+
+
+	@Test
+	public void tcpVirtual() throws Exception {
+
+		roundTrip(TransportProtocol.TCP_VIRTUAL);
+	}
+
+
+	@Test
+	public void unixDomain() throws Exception {
+
+		roundTrip(TransportProtocol.UNIX_DOMAIN);
+	}
+
+
+	@Test
+	public void sharedMemory() throws Exception {
+
+		roundTrip(TransportProtocol.SHARED_MEMORY);
+	}
+
+
+	@Test
+	public void local() throws Exception {
+
+		roundTrip(TransportProtocol.LOCAL);
+	}
+
+
+	@Test
+	public void localSerialized() throws Exception {
+
+		roundTrip(TransportProtocol.local(true));
+	}
+
+
+	private static void roundTrip(TransportProtocol protocol) throws Exception {
+
+		TestReceiver server = new TestReceiver(protocol, true);
+		TestReceiver client = new TestReceiver(protocol, false);
+		server.start();
+		client.start();
+		try {
+			InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getHandle().getPort());
+			Session session = client.openConnection(address);
+			for(int i = 0; i < PACKETS; ++i)
+				session.sendPacketReliably(new PacketKick("Packet " + i));
+
+			session.launchPacket();
+			for(int i = 0; i < PACKETS; ++i) {
+
+				String reason = client.received.poll(TIMEOUT, TimeUnit.MILLISECONDS);
+				assertNotNull(reason, "Echo " + i + " did not arrive");
+				assertEquals("Packet " + i, reason);
+			}
+		} finally {
+			client.halt();
+			server.halt();
+		}
+	}
+}
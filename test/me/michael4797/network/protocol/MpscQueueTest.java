@@ -0,0 +1,99 @@
+package me.michael4797.network.protocol;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class MpscQueueTest {
+
+	private static final int PRODUCERS = 4;
+	private static final int ELEMENTS = 100000;
+
+
+	@Test
+	public void pollsInOrder() {
+
+		MpscQueue<Integer> queue = new MpscQueue<>();
+		assertTrue(queue.isEmpty());
+		assertNull(queue.poll());
+
+		for(int i = 0; i < 10; ++i)
+			queue.offer(i);
+
+		assertFalse(queue.isEmpty());
+		for(int i = 0; i < 10; ++i)
+			assertEquals(Integer.valueOf(i), queue.poll());
+
+		assertNull(queue.poll());
+		assertTrue(queue.isEmpty());
+	}
+
+
+	@Test
+	public void drainsEveryElement() {
+
+		MpscQueue<Integer> queue = new MpscQueue<>();
+		for(int i = 0; i < 5; ++i)
+			queue.offer(i);
+
+		ArrayList<Integer> drained = new ArrayList<>();
+		assertEquals(5, queue.drain(drained::add));
+		assertEquals(List.of(0, 1, 2, 3, 4), drained);
+		assertEquals(0, queue.drain(drained::add));
+	}
+
+
+	@Test
+	public void rejectsNull() {
+
+		assertThrows(NullPointerException.class, () -> new MpscQueue<Integer>().offer(null));
+	}
+
+
+	@Test
+	public void keepsEachProducersOrder() throws InterruptedException {
+
+		MpscQueue<Long> queue = new MpscQueue<>();
+		ArrayList<Thread> producers = new ArrayList<>();
+		for(int p = 0; p < PRODUCERS; ++p) {
+
+			long producer = p;
+			Thread thread = new Thread(() -> {
+
+				for(int i = 0; i < ELEMENTS; ++i)
+					queue.offer(producer << 32 | i);
+			});
+
+			producers.add(thread);
+			thread.start();
+		}
+
+		long[] next = new long[PRODUCERS];
+		int received = 0;
+		while(received < PRODUCERS * ELEMENTS) {
+
+			Long value = queue.poll();
+			if(value == null) {
+
+				Thread.onSpinWait();
+				continue;
+			}
+
+			int producer = (int) (value >>> 32);
+			assertEquals(next[producer]++, value & 0xFFFFFFFFL);
+			++received;
+		}
+
+		for(Thread thread: producers)
+			thread.join();
+
+		assertTrue(queue.isEmpty());
+	}
+}
@@ -0,0 +1,85 @@
+package me.michael4797.network.protocol;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class RttEstimatorTest {
+
+	private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+
+	@Test
+	public void usesInitialTimeoutWithoutSamples() {
+
+		RttEstimator rtt = new RttEstimator();
+		assertFalse(rtt.hasSample());
+		assertEquals(-1, rtt.getSmoothedRtt());
+		assertEquals(RttEstimator.INITIAL_RTO, rtt.getInterval());
+		assertEquals(RttEstimator.INITIAL_RTO, rtt.getRto());
+	}
+
+
+	@Test
+	public void smoothsSamples() {
+
+		RttEstimator rtt = new RttEstimator();
+		rtt.sample(100 * MILLIS);
+		assertTrue(rtt.hasSample());
+		assertEquals(100 * MILLIS, rtt.getSmoothedRtt());
+		assertEquals(50 * MILLIS, rtt.getRttVariance());
+		assertEquals(300 * MILLIS, rtt.getRto());
+
+		rtt.sample(200 * MILLIS);
+		assertEquals(112_500_000, rtt.getSmoothedRtt());
+		assertEquals(62_500_000, rtt.getRttVariance());
+		assertEquals(362_500_000, rtt.getRto());
+	}
+
+
+	@Test
+	public void ignoresNegativeSamples() {
+
+		RttEstimator rtt = new RttEstimator();
+		rtt.sample(-1);
+		assertFalse(rtt.hasSample());
+	}
+
+
+	@Test
+	public void clampsTimeout() {
+
+		RttEstimator rtt = new RttEstimator();
+		rtt.sample(MILLIS);
+		assertEquals(RttEstimator.MIN_RTO, rtt.getRto());
+
+		for(int i = 0; i < 64; ++i)
+			rtt.backoff();
+
+		assertEquals(RttEstimator.MAX_RTO, rtt.getRto());
+	}
+
+
+	@Test
+	public void backoffDoublesUntilReset() {
+
+		RttEstimator rtt = new RttEstimator();
+		rtt.sample(100 * MILLIS);
+		rtt.backoff();
+		assertEquals(600 * MILLIS, rtt.getRto());
+		rtt.backoff();
+		assertEquals(1200 * MILLIS, rtt.getRto());
+		assertEquals(300 * MILLIS, rtt.getInterval());
+
+		rtt.resetBackoff();
+		assertEquals(300 * MILLIS, rtt.getRto());
+
+		rtt.backoff();
+		rtt.sample(100 * MILLIS);
+		assertEquals(rtt.getInterval(), rtt.getRto());
+	}
+}
@@ -0,0 +1,217 @@
+package me.michael4797.network.protocol;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+
+import org.junit.jupiter.api.Test;
+
+import me.michael4797.network.PacketReceiver;
+import me.michael4797.network.TestReceiver;
+import me.michael4797.network.packet.Packet;
+
+public class SendQueueTest {
+
+	private static final int LOW = 16;
+	private static final int HIGH = 32;
+
+
+	@Test
+	public void takesDataInOrder() throws Exception {
+
+		SendQueue queue = queue(OverflowPolicy.BLOCK);
+		PooledBuffer first = data(4);
+		PooledBuffer second = data(4);
+		queue.offer(first, true);
+		queue.offer(second, true);
+
+		assertEquals(8, queue.getPendingBytes());
+		assertSame(first, queue.peek());
+		queue.remove();
+		assertSame(second, queue.take());
+		queue.remove();
+		assertNull(queue.peek());
+		assertTrue(queue.isEmpty());
+		assertEquals(0, queue.getPendingBytes());
+	}
+
+
+	@Test
+	public void writabilityFollowsWatermarks() throws IOException {
+
+		SendQueue queue = queue(OverflowPolicy.BLOCK);
+		queue.offer(data(20), true);
+		assertTrue(queue.isWritable());
+		queue.offer(data(20), true);
+		assertFalse(queue.isWritable());
+
+		queue.offer(data(10), true);
+		queue.peek();
+		queue.remove();
+		assertFalse(queue.isWritable());
+		queue.peek();
+		queue.remove();
+		assertTrue(queue.isWritable());
+	}
+
+
+	@Test
+	public void disconnectPolicyRejectsOverflow() throws IOException {
+
+		SendQueue queue = queue(OverflowPolicy.DISCONNECT);
+		assertTrue(queue.offer(data(HIGH * 2), true));
+		assertThrows(IOException.class, () -> queue.offer(data(1), true));
+	}
+
+
+	@Test
+	public void dropUnreliablePolicyMakesRoom() throws IOException {
+
+		SendQueue queue = queue(OverflowPolicy.DROP_UNRELIABLE);
+		PooledBuffer reliable = data(20);
+		queue.offer(data(20), false);
+		assertTrue(queue.offer(reliable, true));
+		assertEquals(20, queue.getPendingBytes());
+		assertSame(reliable, queue.peek());
+
+		assertFalse(queue.offer(data(20), false));
+		assertEquals(20, queue.getPendingBytes());
+	}
+
+
+	@Test
+	public void admitsMessagesAsAWhole() throws IOException {
+
+		SendQueue queue = queue(OverflowPolicy.DISCONNECT);
+		queue.admit(HIGH * 4);
+		for(int i = 0; i < 4; ++i)
+			queue.offer(data(HIGH), true);
+
+		queue.admitted();
+		assertThrows(IOException.class, () -> queue.offer(data(1), true));
+
+		SendQueue partial = queue(OverflowPolicy.DISCONNECT);
+		partial.offer(data(1), true);
+		assertThrows(IOException.class, () -> partial.admit(HIGH));
+	}
+
+
+	@Test
+	public void awaitWritableBlocksUntilDrained() throws Exception {
+
+		SendQueue queue = queue(OverflowPolicy.BLOCK);
+		queue.offer(data(HIGH), true);
+		queue.offer(data(HIGH), true);
+
+		Thread waiter = new Thread(() -> {
+
+			try {
+				queue.awaitWritable();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+		});
+
+		waiter.start();
+		waiter.join(100);
+		assertTrue(waiter.isAlive());
+
+		queue.peek();
+		queue.remove();
+		queue.peek();
+		queue.remove();
+		waiter.join(5000);
+		assertFalse(waiter.isAlive());
+	}
+
+
+	@Test
+	public void closeWakesWaitersAndRejectsData() throws Exception {
+
+		SendQueue queue = queue(OverflowPolicy.BLOCK);
+		queue.offer(data(HIGH * 2), true);
+
+		Throwable[] error = new Throwable[1];
+		Thread waiter = new Thread(() -> {
+
+			try {
+				queue.awaitWritable();
+			} catch (IOException e) {
+				error[0] = e;
+			}
+		});
+
+		waiter.start();
+		queue.close();
+		waiter.join(5000);
+		assertFalse(waiter.isAlive());
+		assertTrue(error[0] instanceof IOException);
+		assertThrows(IOException.class, () -> queue.offer(data(1), true));
+		assertNull(queue.take());
+	}
+
+
+	private static SendQueue queue(OverflowPolicy policy) {
+
+		TestReceiver receiver = new TestReceiver(TransportProtocol.LOCAL, false);
+		receiver.setWatermarks(LOW, HIGH);
+		receiver.setOverflowPolicy(policy);
+		return new SendQueue(new Handle(receiver));
+	}
+
+
+	private static PooledBuffer data(int length) {
+
+		return PooledBuffer.wrap(new byte[length]);
+	}
+
+
+	private static class Handle implements SessionHandle{
+
+		private final PacketReceiver<?> receiver;
+		private final InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), 1);
+
+
+		private Handle(PacketReceiver<?> receiver) {
+
+			this.receiver = receiver;
+		}
+
+
+		@Override
+		public PacketReceiver<?> getReceiver() {
+
+			return receiver;
+		}
+
+
+		@Override
+		public InetSocketAddress getAddress() {
+
+			return address;
+		}
+
+
+		@Override
+		public void forceReliability(boolean reliable) {}
+
+
+		@Override
+		public void sendPacket(Packet packet) {}
+
+
+		@Override
+		public void launchPacket() {}
+
+
+		@Override
+		public void close() {}
+	}
+}
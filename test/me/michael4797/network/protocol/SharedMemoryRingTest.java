@@ -0,0 +1,115 @@
+package me.michael4797.network.protocol;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class SharedMemoryRingTest {
+
+	private static final int CAPACITY = 64;
+
+
+	@Test
+	public void readsRecordsInOrder() {
+
+		SharedMemoryRing ring = ring(CAPACITY);
+		assertEquals(-1, ring.peek());
+
+		assertTrue(ring.write(record(5, 1), 0, 5));
+		assertTrue(ring.write(record(3, 2), 0, 3));
+		assertEquals(5, ring.peek());
+
+		byte[] data = new byte[ring.getMaxRecordLength()];
+		assertEquals(5, ring.read(data));
+		assertArrayEquals(record(5, 1), Arrays.copyOf(data, 5));
+		assertEquals(3, ring.read(data));
+		assertArrayEquals(record(3, 2), Arrays.copyOf(data, 3));
+		assertEquals(-1, ring.read(data));
+	}
+
+
+	@Test
+	public void rejectsWritesWhenFull() {
+
+		SharedMemoryRing ring = ring(CAPACITY);
+		int length = ring.getMaxRecordLength();
+		assertTrue(ring.write(record(length, 1), 0, length));
+		assertTrue(ring.write(record(length, 2), 0, length));
+		assertFalse(ring.write(record(1, 3), 0, 1));
+
+		byte[] data = new byte[length];
+		assertEquals(length, ring.read(data));
+		assertTrue(ring.write(record(1, 3), 0, 1));
+	}
+
+
+	@Test
+	public void wrapsRecordsAroundTheEnd() {
+
+		SharedMemoryRing ring = ring(CAPACITY);
+		byte[] data = new byte[ring.getMaxRecordLength()];
+		for(int i = 0; i < 100; ++i) {
+
+			int length = 1 + i % ring.getMaxRecordLength();
+			assertTrue(ring.write(record(length, i), 0, length));
+			assertEquals(length, ring.read(data));
+			assertArrayEquals(record(length, i), Arrays.copyOf(data, length));
+		}
+
+		assertEquals(-1, ring.peek());
+	}
+
+
+	@Test
+	public void sharesTheRegionBetweenViews() {
+
+		ByteBuffer region = ByteBuffer.allocateDirect(SharedMemoryRing.HEADER_SIZE + CAPACITY);
+		SharedMemoryRing writer = new SharedMemoryRing(region.duplicate(), CAPACITY);
+		SharedMemoryRing reader = new SharedMemoryRing(region.duplicate(), CAPACITY);
+
+		assertTrue(writer.write(record(7, 4), 0, 7));
+		byte[] data = new byte[7];
+		assertEquals(7, reader.read(data));
+		assertArrayEquals(record(7, 4), data);
+		assertEquals(writer.getReadPosition(), reader.getReadPosition());
+
+		assertFalse(reader.isClosed());
+		writer.close();
+		assertTrue(reader.isClosed());
+	}
+
+
+	@Test
+	public void rejectsInvalidRings() {
+
+		assertThrows(IllegalArgumentException.class, () -> ring(48));
+		assertThrows(IllegalArgumentException.class, () -> new SharedMemoryRing(ByteBuffer.allocateDirect(CAPACITY), CAPACITY));
+
+		SharedMemoryRing ring = ring(CAPACITY);
+		int length = ring.getMaxRecordLength() + 1;
+		assertThrows(IllegalArgumentException.class, () -> ring.write(new byte[length], 0, length));
+	}
+
+
+	private static SharedMemoryRing ring(int capacity) {
+
+		return new SharedMemoryRing(ByteBuffer.allocateDirect(SharedMemoryRing.HEADER_SIZE + Math.max(capacity, CAPACITY)), capacity);
+	}
+
+
+	private static byte[] record(int length, int seed) {
+
+		byte[] record = new byte[length];
+		for(int i = 0; i < length; ++i)
+			record[i] = (byte) (seed * 31 + i);
+
+		return record;
+	}
+}